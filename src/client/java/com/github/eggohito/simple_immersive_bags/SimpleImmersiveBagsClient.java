@@ -3,15 +3,21 @@ package com.github.eggohito.simple_immersive_bags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
 import com.github.eggohito.simple_immersive_bags.client.renderer.BackpackArmorRenderer;
 import com.github.eggohito.simple_immersive_bags.client.screen.BagScreen;
+import com.github.eggohito.simple_immersive_bags.client.screen.BagScreenBackgrounds;
 import com.github.eggohito.simple_immersive_bags.networking.SimpleImmersiveBagsS2CPackets;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandlerTypes;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.rendering.v1.ArmorRenderer;
 import net.fabricmc.fabric.api.client.rendering.v1.ColorProviderRegistry;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
 import net.minecraft.client.gui.screen.ingame.HandledScreens;
 import net.minecraft.client.item.ClampedModelPredicateProvider;
 import net.minecraft.client.item.ModelPredicateProviderRegistry;
 import net.minecraft.item.DyeableItem;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
 import net.minecraft.util.Identifier;
 
 public class SimpleImmersiveBagsClient implements ClientModInitializer {
@@ -19,7 +25,7 @@ public class SimpleImmersiveBagsClient implements ClientModInitializer {
 	public static final Identifier VANILLA_RECIPE_BOOK_WIDGET_ID = new Identifier("minecraft:widgets/recipe_book");
 
 	public static final ClampedModelPredicateProvider BAG_STATE_PROVIDER = (stack, world, entity, seed) -> {
-		BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(stack, null);
+		BagContainer bagContainer = BagUtil.findContainer(stack);
 		return bagContainer != null
 			? bagContainer.getState(stack).getCustomModelFlag()
 			: Float.NEGATIVE_INFINITY;
@@ -43,6 +49,21 @@ public class SimpleImmersiveBagsClient implements ClientModInitializer {
 		ArmorRenderer.register(ENDER_BACKPACK_ARMOR_RENDERER, SimpleImmersiveBags.ENDER_BACKPACK);
 
 		HandledScreens.register(BagScreenHandlerTypes.GENERIC_BAG, BagScreen::new);
+
+		ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+
+			@Override
+			public Identifier getFabricId() {
+				return SimpleImmersiveBags.id("bag_screen_backgrounds");
+			}
+
+			@Override
+			public void reload(ResourceManager manager) {
+				BagScreenBackgrounds.clear();
+			}
+
+		});
+
 		SimpleImmersiveBagsS2CPackets.registerAll();
 
 	}
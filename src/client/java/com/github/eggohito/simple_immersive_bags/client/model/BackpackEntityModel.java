@@ -17,6 +17,11 @@ public class BackpackEntityModel extends BipedEntityModel<LivingEntity> {
         this.leftLeg.visible = false;
     }
 
+    //  The cuboid of the backpack itself, without the cuboid of the body it's attached to
+    public ModelPart getBase() {
+        return this.body.getChild("base");
+    }
+
     public static BackpackEntityModel create() {
 
         ModelData modelData = getModelData(Dilation.NONE, 0.0f);
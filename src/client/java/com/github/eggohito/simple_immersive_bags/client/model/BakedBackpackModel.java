@@ -0,0 +1,149 @@
+package com.github.eggohito.simple_immersive_bags.client.model;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import net.minecraft.client.model.ModelPart;
+import net.minecraft.client.model.ModelTransform;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.util.math.MatrixStack;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+//  The vertices of the cuboids of the body of a backpack model, baked once in the body's own space. Rendering only has to transform
+//  them by the matrix of the body, instead of going through every part (and cuboid) of the model
+public class BakedBackpackModel {
+
+    //  The position, texture coordinates and normal of each vertex
+    private static final int VERTEX_STRIDE = 8;
+
+    //  Only used on the render thread, so that transforming a vertex doesn't allocate anything
+    private final Vector4f position = new Vector4f();
+    private final Vector3f normal = new Vector3f();
+
+    private final float[] vertices;
+
+    private BakedBackpackModel(float[] vertices) {
+        this.vertices = vertices;
+    }
+
+    public static BakedBackpackModel bake(BackpackEntityModel model) {
+        return bake(model.body);
+    }
+
+    //  Bakes the specified part (and its children) without its own transform, since that's applied from the pose of the wearer when
+    //  rendering. The part has to be the body, or a part in the same space as it
+    public static BakedBackpackModel bake(ModelPart part) {
+
+        VertexRecorder recorder = new VertexRecorder();
+
+        ModelTransform partTransform = part.getTransform();
+        part.setTransform(ModelTransform.NONE);
+
+        part.render(new MatrixStack(), recorder, 0, OverlayTexture.DEFAULT_UV);
+        part.setTransform(partTransform);
+
+        return new BakedBackpackModel(recorder.vertices.toFloatArray());
+
+    }
+
+    //  Renders the baked vertices with the transform of the specified body part, which is the body of the (already posed) model of
+    //  the wearer
+    public void render(MatrixStack matrices, ModelPart body, VertexConsumer vertexConsumer, int light, int overlay, float red, float green, float blue, float alpha) {
+
+        matrices.push();
+        body.rotate(matrices);
+
+        MatrixStack.Entry entry = matrices.peek();
+
+        Matrix4f positionMatrix = entry.getPositionMatrix();
+        Matrix3f normalMatrix = entry.getNormalMatrix();
+
+        for (int i = 0; i < vertices.length; i += VERTEX_STRIDE) {
+
+            positionMatrix.transform(position.set(vertices[i], vertices[i + 1], vertices[i + 2], 1.0f));
+            normalMatrix.transform(normal.set(vertices[i + 5], vertices[i + 6], vertices[i + 7]));
+
+            vertexConsumer.vertex(position.x(), position.y(), position.z(), red, green, blue, alpha, vertices[i + 3], vertices[i + 4], overlay, light, normal.x(), normal.y(), normal.z());
+
+        }
+
+        matrices.pop();
+
+    }
+
+    //  Records the vertices that a model part renders, which are already in the space of the matrix stack it was rendered with. The
+    //  elements of a vertex are buffered until it's finished with #next. Only the position, texture coordinates and normal are recorded,
+    //  since the color, overlay and light are passed in when rendering
+    private static class VertexRecorder implements VertexConsumer {
+
+        private final FloatArrayList vertices = new FloatArrayList();
+
+        private float x;
+        private float y;
+        private float z;
+
+        private float u;
+        private float v;
+
+        private float normalX;
+        private float normalY;
+        private float normalZ;
+
+        @Override
+        public VertexConsumer vertex(double x, double y, double z) {
+            this.x = (float) x;
+            this.y = (float) y;
+            this.z = (float) z;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(int red, int green, int blue, int alpha) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(float u, float v) {
+            this.u = u;
+            this.v = v;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(float x, float y, float z) {
+            this.normalX = x;
+            this.normalY = y;
+            this.normalZ = z;
+            return this;
+        }
+
+        @Override
+        public void next() {
+            vertices.addElements(vertices.size(), new float[] {x, y, z, u, v, normalX, normalY, normalZ});
+        }
+
+        @Override
+        public void fixedColor(int red, int green, int blue, int alpha) {
+
+        }
+
+        @Override
+        public void unfixColor() {
+
+        }
+
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.github.eggohito.simple_immersive_bags.client.renderer;
 
 import com.github.eggohito.simple_immersive_bags.client.model.BackpackEntityModel;
+import com.github.eggohito.simple_immersive_bags.client.model.BakedBackpackModel;
 import com.github.eggohito.simple_immersive_bags.content.item.DyeableBagItem;
 import net.fabricmc.fabric.api.client.rendering.v1.ArmorRenderer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.model.ModelPart;
 import net.minecraft.client.render.OverlayTexture;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumer;
@@ -17,15 +20,27 @@ import net.minecraft.util.Identifier;
 
 public class BackpackArmorRenderer implements ArmorRenderer {
 
+    //  The distances (in blocks) from the camera beyond which the overlay and glint are skipped, only the backpack's own cuboid is
+    //  rendered, and nothing is rendered at all. A distance of 0 or less disables that level of detail
+    private static final double DETAIL_DISTANCE_SQUARED = getSquaredDistance("simple-immersive-bags.backpackLod.detailDistance", 16);
+    private static final double SIMPLE_DISTANCE_SQUARED = getSquaredDistance("simple-immersive-bags.backpackLod.simpleDistance", 32);
+    private static final double CULL_DISTANCE_SQUARED = getSquaredDistance("simple-immersive-bags.backpackLod.cullDistance", 64);
+
     private final Identifier baseTexture;
     private final Identifier overlayTexture;
 
-    private final BackpackEntityModel model;
+    private final BakedBackpackModel model;
+    private final BakedBackpackModel simpleModel;
 
     public BackpackArmorRenderer(Identifier baseTexture, Identifier overlayTexture) {
+
+        BackpackEntityModel entityModel = BackpackEntityModel.create();
+
         this.baseTexture = baseTexture;
         this.overlayTexture = overlayTexture;
-        this.model = BackpackEntityModel.create();
+        this.model = BakedBackpackModel.bake(entityModel);
+        this.simpleModel = BakedBackpackModel.bake(entityModel.getBase());
+
     }
 
     public BackpackArmorRenderer(Identifier baseTexture) {
@@ -35,24 +50,45 @@ public class BackpackArmorRenderer implements ArmorRenderer {
     @Override
     public void render(MatrixStack matrices, VertexConsumerProvider vertexConsumers, ItemStack stack, LivingEntity entity, EquipmentSlot slot, int light, BipedEntityModel<LivingEntity> contextModel) {
 
-        contextModel.copyBipedStateTo(model);
-        model.setAngles(entity, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f);
+        double squaredDistance = MinecraftClient.getInstance().getEntityRenderDispatcher().getSquaredDistanceToCamera(entity);
+        if (squaredDistance > CULL_DISTANCE_SQUARED) {
+            return;
+        }
+
+        boolean detailed = squaredDistance <= DETAIL_DISTANCE_SQUARED;
+        BakedBackpackModel lodModel = squaredDistance <= SIMPLE_DISTANCE_SQUARED
+            ? this.model
+            : this.simpleModel;
+
+        //  The context model is already posed after the wearer, so the baked model only has to follow its body
+        ModelPart body = contextModel.body;
 
         //  Apply a color tint and render the base texture
-        VertexConsumer baseVertex = ItemRenderer.getArmorGlintConsumer(vertexConsumers, RenderLayer.getArmorCutoutNoCull(baseTexture), false, stack.hasGlint());
-        float[] rgb = DyeableBagItem.unpackRgb(stack);
+        VertexConsumer baseVertex = ItemRenderer.getArmorGlintConsumer(vertexConsumers, RenderLayer.getArmorCutoutNoCull(baseTexture), false, detailed && stack.hasGlint());
+        int tint = DyeableBagItem.getTint(stack);
+
+        float red = (tint >> 16 & 255) / 255.0f;
+        float green = (tint >> 8 & 255) / 255.0f;
+        float blue = (tint & 255) / 255.0f;
 
-        model.render(matrices, baseVertex, light, OverlayTexture.DEFAULT_UV, rgb[0], rgb[1], rgb[2], 1.0f);
+        lodModel.render(matrices, body, baseVertex, light, OverlayTexture.DEFAULT_UV, red, green, blue, 1.0f);
 
-        //  If no overlay texture is specified, skip this process
-        if (overlayTexture == null) {
+        //  If no overlay texture is specified (or the wearer is too far away for it to be noticeable), skip this process
+        if (overlayTexture == null || !detailed) {
             return;
         }
 
         //  Render the overlay texture
         VertexConsumer overlayVertex = ItemRenderer.getArmorGlintConsumer(vertexConsumers, RenderLayer.getArmorCutoutNoCull(overlayTexture), false, stack.hasNbt());
-        model.render(matrices, overlayVertex, light, OverlayTexture.DEFAULT_UV, 1.0f, 1.0f, 1.0f, 1.0f);
+        lodModel.render(matrices, body, overlayVertex, light, OverlayTexture.DEFAULT_UV, 1.0f, 1.0f, 1.0f, 1.0f);
+
+    }
 
+    private static double getSquaredDistance(String property, int defaultDistance) {
+        int distance = Integer.getInteger(property, defaultDistance);
+        return distance > 0
+            ? (double) distance * distance
+            : Double.POSITIVE_INFINITY;
     }
 
 }
@@ -0,0 +1,85 @@
+package com.github.eggohito.simple_immersive_bags.client.screen;
+
+import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
+import com.github.eggohito.simple_immersive_bags.inventory.DelegatedBagInventory;
+import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.Util;
+
+//  Opens a provisional bag screen as soon as the player asks the server to open their bag, instead of waiting for the server's handler
+//  to arrive. The provisional screen shows the last synced contents of the bag, and rejects any interaction until it's replaced by the
+//  screen of the server's handler. Only accessed from the render thread
+public class BagOpenPrediction {
+
+    private static final boolean ENABLED = !Boolean.getBoolean("simple-immersive-bags.disableBagOpenPrediction");
+
+    //  How long (in milliseconds) a provisional screen waits for the server's handler before it's closed, e.g. because the server
+    //  didn't open the bag after all
+    public static final long TIMEOUT = 5000L;
+
+    private static long predictedAt = -1L;
+    private static boolean cancelled;
+
+    public static void predict(MinecraftClient client, ClientPlayerEntity player, EquipmentSlot slotWithBag) {
+
+        if (!ENABLED) {
+            return;
+        }
+
+        ItemStack bagStack = player.getEquippedStack(slotWithBag);
+        BagContainer bagContainer = BagUtil.findContainer(bagStack);
+
+        if (bagContainer == null) {
+            return;
+        }
+
+        //  The contents of delegated bag inventories (e.g. the ender chest of ender bags) aren't synced to the client, so they can't be
+        //  predicted
+        BagInventory bagInventory = bagContainer.asDelegatedBagInventory(player, bagStack);
+        if (bagInventory == BagInventory.EMPTY || bagInventory instanceof DelegatedBagInventory) {
+            return;
+        }
+
+        BagInventory provisionalInventory = new BagInventory(bagStack, bagInventory.getScreenTextureId(), false, true, bagInventory.getRows(), bagInventory.getColumns());
+        BagScreenHandler provisionalHandler = BagScreenHandler.createProvisional(player.getInventory(), provisionalInventory);
+
+        predictedAt = Util.getMeasuringTimeMs();
+        cancelled = false;
+
+        client.setScreen(new BagScreen(provisionalHandler, player.getInventory(), provisionalInventory.getDisplayName()));
+
+    }
+
+    public static boolean isPending() {
+        return predictedAt >= 0L
+            && Util.getMeasuringTimeMs() - predictedAt <= TIMEOUT;
+    }
+
+    //  Called when the provisional screen is closed by the player before the server's handler arrived
+    public static void cancel() {
+
+        if (isPending()) {
+            cancelled = true;
+        }
+
+    }
+
+    //  Called when the screen of a handler of the server opens. Returns true if the screen should be closed right away, since the
+    //  provisional screen it replaces has already been closed by the player
+    public static boolean confirm() {
+
+        boolean close = cancelled && isPending();
+
+        predictedAt = -1L;
+        cancelled = false;
+
+        return close;
+
+    }
+
+}
@@ -6,21 +6,35 @@ import com.github.eggohito.simple_immersive_bags.client.duck.IdentifiableButtonW
 import com.github.eggohito.simple_immersive_bags.content.item.DyeableBagItem;
 import com.github.eggohito.simple_immersive_bags.mixin.client.HandledScreenAccessor;
 import com.github.eggohito.simple_immersive_bags.mixin.client.ScreenAccessor;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.ScrollBagC2SPacket;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.SortBagContentsC2SPacket;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.TransferBagContentsC2SPacket;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import com.github.eggohito.simple_immersive_bags.util.BagSortKey;
+import com.github.eggohito.simple_immersive_bags.util.BagTransferMode;
 import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.Drawable;
 import net.minecraft.client.gui.screen.ingame.InventoryScreen;
+import net.minecraft.client.gui.tooltip.Tooltip;
+import net.minecraft.client.gui.widget.ButtonWidget;
 import net.minecraft.client.gui.widget.TexturedButtonWidget;
 import net.minecraft.client.render.*;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.screen.PlayerScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.ColorHelper;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 
+import java.util.Locale;
+
 @SuppressWarnings("unused")
 public class BagScreen extends InventoryScreen {
 
@@ -29,15 +43,37 @@ public class BagScreen extends InventoryScreen {
     private static final int BACKGROUND_TEXTURE_WIDTH = 256;
     private static final int BACKGROUND_TEXTURE_HEIGHT = 256;
 
+    private static final int TRANSFER_BUTTON_SIZE = 10;
+
     private final BagScreenHandler bagScreenHandler;
     private final Text title;
 
     private final int defaultTextColor;
 
+    private int tint;
+
     private float red;
     private float green;
     private float blue;
 
+    //  The background and the tinted texture of the bag composited into one, or null if they couldn't be composited, in which case
+    //  they're drawn separately
+    @Nullable
+    private Identifier backgroundTextureId;
+
+    @Nullable
+    private TexturedButtonWidget recipeButton;
+
+    //  Kept across screens, so the bag is sorted the same way until the player picks another key
+    private static BagSortKey sortKey = BagSortKey.ID;
+
+    private ButtonWidget sortButton;
+    private ButtonWidget depositButton;
+    private ButtonWidget restockButton;
+
+    private ButtonWidget previousPageButton;
+    private ButtonWidget nextPageButton;
+
     public BagScreen(PlayerScreenHandler bagScreenHandler, PlayerInventory playerInventory, Text title) {
         super(playerInventory.player);
 
@@ -58,6 +94,120 @@ public class BagScreen extends InventoryScreen {
         this.initColor();
         super.init();
 
+        this.backgroundTextureId = BagScreenBackgrounds.getComposite(BACKGROUND_TEXTURE, bagScreenHandler.getScreenTextureId(), tint);
+        this.recipeButton = this.findRecipeButton();
+
+        this.sortButton = this.addDrawableChild(ButtonWidget.builder(Text.translatable("screen.simple-immersive-bags.bag.sort"), this::onSortButtonPressed)
+            .tooltip(createSortTooltip())
+            .size(TRANSFER_BUTTON_SIZE, TRANSFER_BUTTON_SIZE)
+            .build());
+        this.depositButton = this.addDrawableChild(createTransferButton(BagTransferMode.DEPOSIT, "deposit"));
+        this.restockButton = this.addDrawableChild(createTransferButton(BagTransferMode.RESTOCK, "restock"));
+
+        this.previousPageButton = this.addDrawableChild(ButtonWidget.builder(Text.translatable("screen.simple-immersive-bags.bag.previous_page"), button -> this.scrollBag(bagScreenHandler.getFirstVisibleRow() - BagScreenHandler.MAX_VISIBLE_ROWS))
+            .size(TRANSFER_BUTTON_SIZE, TRANSFER_BUTTON_SIZE)
+            .build());
+        this.nextPageButton = this.addDrawableChild(ButtonWidget.builder(Text.translatable("screen.simple-immersive-bags.bag.next_page"), button -> this.scrollBag(bagScreenHandler.getFirstVisibleRow() + BagScreenHandler.MAX_VISIBLE_ROWS))
+            .size(TRANSFER_BUTTON_SIZE, TRANSFER_BUTTON_SIZE)
+            .build());
+
+        previousPageButton.visible = bagScreenHandler.isPaged();
+        nextPageButton.visible = bagScreenHandler.isPaged();
+
+        this.moveRecipeButtonWidget();
+        this.moveTransferButtons();
+
+        if (bagScreenHandler.isProvisional()) {
+            sortButton.active = false;
+            depositButton.active = false;
+            restockButton.active = false;
+        }
+
+        //  The player closed the provisional screen that this screen replaces, so close this one as well (once it's done opening)
+        else if (BagOpenPrediction.confirm() && client != null) {
+            client.send(this::close);
+        }
+
+    }
+
+    //  Provisional screens aren't synced with the server, so any click on their slots is rejected
+    @Override
+    protected void onMouseClick(Slot slot, int slotId, int button, SlotActionType actionType) {
+
+        if (!bagScreenHandler.isProvisional()) {
+            super.onMouseClick(slot, slotId, button, actionType);
+        }
+
+    }
+
+    @Override
+    protected void handledScreenTick() {
+
+        super.handledScreenTick();
+
+        //  Give up on the server's handler if it hasn't arrived in time
+        if (bagScreenHandler.isProvisional() && !BagOpenPrediction.isPending()) {
+            this.close();
+        }
+
+    }
+
+    //  The server doesn't know about provisional screens, so closing one must not close whatever handler it has opened in the meantime
+    @Override
+    public void close() {
+
+        if (!bagScreenHandler.isProvisional()) {
+            super.close();
+        }
+
+        else if (client != null) {
+            BagOpenPrediction.cancel();
+            client.setScreen(null);
+        }
+
+    }
+
+    //  Toggling the recipe book moves the screen (and resets the position of the recipe button), which is the only time the buttons
+    //  have to be moved outside of #init
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+
+        boolean clicked = super.mouseClicked(mouseX, mouseY, button);
+
+        this.moveRecipeButtonWidget();
+        this.moveTransferButtons();
+
+        return clicked;
+
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+
+        if (bagScreenHandler.isPaged() && verticalAmount != 0) {
+            this.scrollBag(bagScreenHandler.getFirstVisibleRow() - (int) Math.signum(verticalAmount));
+            return true;
+        }
+
+        return super.mouseScrolled(mouseX, mouseY, horizontalAmount, verticalAmount);
+
+    }
+
+    //  Scrolls the bag slots on both sides, so that the client doesn't have to wait for the server to show the new rows
+    private void scrollBag(int firstRow) {
+
+        if (bagScreenHandler.isProvisional()) {
+            return;
+        }
+
+        int clampedFirstRow = MathHelper.clamp(firstRow, 0, bagScreenHandler.getMaxFirstVisibleRow());
+        if (clampedFirstRow == bagScreenHandler.getFirstVisibleRow()) {
+            return;
+        }
+
+        bagScreenHandler.scrollTo(clampedFirstRow);
+        ClientPlayNetworking.send(new ScrollBagC2SPacket(bagScreenHandler.syncId, clampedFirstRow));
+
     }
 
     @Override
@@ -66,24 +216,28 @@ public class BagScreen extends InventoryScreen {
         super.drawForeground(context, mouseX, mouseY);
         context.drawText(textRenderer, title, bagScreenHandler.getTopPos().x + 1, bagScreenHandler.getTopPos().y + 1, defaultTextColor, true);
 
-        this.moveRecipeButtonWidget();
-
     }
 
     @Override
     protected void drawBackground(DrawContext context, float delta, int mouseX, int mouseY) {
 
+        if (backgroundTextureId != null) {
+            RenderSystem.enableBlend();
+            context.drawTexture(backgroundTextureId, x, y, 0, 0, backgroundWidth, backgroundHeight, BACKGROUND_TEXTURE_WIDTH, BACKGROUND_TEXTURE_HEIGHT);
+            RenderSystem.disableBlend();
+        }
+
         //  Draw the background texture before drawing the texture with a color tint
-        drawTintedTexture(context, BACKGROUND_TEXTURE, x, y, 1.0f, 1.0f, 1.0f);
-        drawTintedTexture(context, bagScreenHandler.getScreenTextureId(), x, y, red, green, blue);
+        else {
+            drawTintedTexture(context, BACKGROUND_TEXTURE, x, y, 1.0f, 1.0f, 1.0f);
+            drawTintedTexture(context, bagScreenHandler.getScreenTextureId(), x, y, red, green, blue);
+        }
 
         //  Draw the entity paper doll
         if (client != null && client.player != null) {
             drawEntity(context, x + 26, y + 8, x + 75, y + 78, 30, 0.0625f, mouseX, mouseY, client.player);
         }
 
-        this.moveRecipeButtonWidget();
-
     }
 
     public BagScreenHandler getBagHandler() {
@@ -93,11 +247,11 @@ public class BagScreen extends InventoryScreen {
     public void initColor() {
 
         ItemStack sourceStack = bagScreenHandler.getSourceStack();
-        float[] rgb = DyeableBagItem.unpackRgb(sourceStack);
+        this.tint = DyeableBagItem.getTint(sourceStack);
 
-        this.red = rgb[0];
-        this.green = rgb[1];
-        this.blue = rgb[2];
+        this.red = (tint >> 16 & 255) / 255.0f;
+        this.green = (tint >> 8 & 255) / 255.0f;
+        this.blue = (tint & 255) / 255.0f;
 
     }
 
@@ -134,20 +288,70 @@ public class BagScreen extends InventoryScreen {
 
     }
 
+    private ButtonWidget createTransferButton(BagTransferMode mode, String name) {
+        return ButtonWidget.builder(Text.translatable("screen.simple-immersive-bags.bag." + name), button -> ClientPlayNetworking.send(new TransferBagContentsC2SPacket(bagScreenHandler.syncId, mode)))
+            .tooltip(Tooltip.of(Text.translatable("screen.simple-immersive-bags.bag." + name + ".tooltip")))
+            .size(TRANSFER_BUTTON_SIZE, TRANSFER_BUTTON_SIZE)
+            .build();
+    }
+
+    //  Shift-clicking the button picks the next sort key before sorting
+    private void onSortButtonPressed(ButtonWidget button) {
+
+        if (hasShiftDown()) {
+            sortKey = sortKey.next();
+            button.setTooltip(createSortTooltip());
+        }
+
+        ClientPlayNetworking.send(new SortBagContentsC2SPacket(bagScreenHandler.syncId, sortKey));
+
+    }
+
+    private static Tooltip createSortTooltip() {
+        Text sortKeyText = Text.translatable("screen.simple-immersive-bags.bag.sort." + sortKey.name().toLowerCase(Locale.ROOT));
+        return Tooltip.of(Text.translatable("screen.simple-immersive-bags.bag.sort.tooltip", sortKeyText));
+    }
+
+    //  Align the transfer buttons to the right of the bag's title, which moves alongside the screen when the recipe book is toggled
+    private void moveTransferButtons() {
+
+        int buttonX = x + bagScreenHandler.getTopPos().x + bagScreenHandler.getBagInventory().getColumns() * 18 - TRANSFER_BUTTON_SIZE - 1;
+        int buttonY = y + bagScreenHandler.getTopPos().y;
+
+        restockButton.setPosition(buttonX, buttonY);
+        depositButton.setPosition(buttonX - TRANSFER_BUTTON_SIZE - 1, buttonY);
+        sortButton.setPosition(buttonX - (TRANSFER_BUTTON_SIZE + 1) * 2, buttonY);
+
+        int pageButtonX = buttonX + TRANSFER_BUTTON_SIZE + 3;
+        int pageButtonY = buttonY + BagScreenHandler.BAG_TITLE_Y_OFFSET;
+
+        previousPageButton.setPosition(pageButtonX, pageButtonY);
+        nextPageButton.setPosition(pageButtonX, pageButtonY + BagScreenHandler.MAX_VISIBLE_ROWS * 18 - TRANSFER_BUTTON_SIZE - 1);
+
+    }
+
     private void moveRecipeButtonWidget() {
 
-        for (Drawable drawable : ((ScreenAccessor) this).getDrawables()) {
+        if (recipeButton != null) {
+            recipeButton.setPosition(recipeButton.getX(), bagScreenHandler.getOffhandPos().y);
+        }
 
-            if (!(drawable instanceof TexturedButtonWidget buttonWidget) || !(buttonWidget instanceof IdentifiableButtonWidget identifiedButtonWidget)) {
-                continue;
-            }
+    }
+
+    //  The recipe button is added by InventoryScreen#init, so it's looked up once after that instead of every time it has to be moved
+    @Nullable
+    private TexturedButtonWidget findRecipeButton() {
 
-            if (identifiedButtonWidget.sib$equals(SimpleImmersiveBagsClient.VANILLA_RECIPE_BOOK_WIDGET_ID)) {
-                buttonWidget.setPosition(buttonWidget.getX(), bagScreenHandler.getOffhandPos().y);
+        for (Drawable drawable : ((ScreenAccessor) this).getDrawables()) {
+
+            if (drawable instanceof TexturedButtonWidget buttonWidget && buttonWidget instanceof IdentifiableButtonWidget identifiedButtonWidget && identifiedButtonWidget.sib$equals(SimpleImmersiveBagsClient.VANILLA_RECIPE_BOOK_WIDGET_ID)) {
+                return buttonWidget;
             }
 
         }
 
+        return null;
+
     }
 
 }
@@ -0,0 +1,145 @@
+package com.github.eggohito.simple_immersive_bags.client.screen;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.client.texture.TextureManager;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//  Composites the tinted texture of a bag screen over the shared background texture once, so that the screen only has to draw a single
+//  texture per frame, without changing the shader color in between. Composites are kept for the most recently used textures and tints,
+//  and are only accessed from the render thread
+public class BagScreenBackgrounds {
+
+    private static final int MAX_CACHED_COMPOSITES = 8;
+
+    private static final Map<Key, Identifier> COMPOSITES = new LinkedHashMap<>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Identifier> eldest) {
+
+            if (this.size() <= MAX_CACHED_COMPOSITES) {
+                return false;
+            }
+
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(eldest.getValue());
+            return true;
+
+        }
+
+    };
+
+    //  Returns the ID of the composite of the specified textures, or null if either of them couldn't be read
+    @Nullable
+    public static Identifier getComposite(Identifier backgroundTextureId, Identifier tintedTextureId, int tint) {
+
+        Key key = new Key(backgroundTextureId, tintedTextureId, tint);
+        Identifier compositeId = COMPOSITES.get(key);
+
+        if (compositeId != null) {
+            return compositeId;
+        }
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        NativeImage composite = composite(client.getResourceManager(), backgroundTextureId, tintedTextureId, tint);
+
+        if (composite == null) {
+            return null;
+        }
+
+        compositeId = client.getTextureManager().registerDynamicTexture("simple-immersive-bags/bag_background", new NativeImageBackedTexture(composite));
+        COMPOSITES.put(key, compositeId);
+
+        return compositeId;
+
+    }
+
+    //  The composites are made from resources, so they're dropped whenever the resources are reloaded
+    public static void clear() {
+
+        TextureManager textureManager = MinecraftClient.getInstance().getTextureManager();
+        COMPOSITES.values().forEach(textureManager::destroyTexture);
+
+        COMPOSITES.clear();
+
+    }
+
+    //  Blends the tinted texture over the background texture the same way drawing them on top of each other would, so that the composite
+    //  (when drawn with blending) looks the same as the two of them. The tinted texture is sampled relative to its own size, since both
+    //  textures are mapped to the same UVs
+    @Nullable
+    private static NativeImage composite(ResourceManager resourceManager, Identifier backgroundTextureId, Identifier tintedTextureId, int tint) {
+
+        try (NativeImage backgroundImage = readImage(resourceManager, backgroundTextureId); NativeImage tintedImage = readImage(resourceManager, tintedTextureId)) {
+
+            int width = backgroundImage.getWidth();
+            int height = backgroundImage.getHeight();
+
+            NativeImage composite = new NativeImage(width, height, false);
+
+            float tintRed = (tint >> 16 & 255) / 255.0f;
+            float tintGreen = (tint >> 8 & 255) / 255.0f;
+            float tintBlue = (tint & 255) / 255.0f;
+
+            for (int y = 0; y < height; y++) {
+
+                for (int x = 0; x < width; x++) {
+
+                    //  Both colors are in the ABGR format
+                    int background = backgroundImage.getColor(x, y);
+                    int tinted = tintedImage.getColor(x * tintedImage.getWidth() / width, y * tintedImage.getHeight() / height);
+
+                    float backgroundAlpha = (background >>> 24) / 255.0f;
+                    float tintedAlpha = (tinted >>> 24) / 255.0f;
+
+                    float alpha = tintedAlpha + backgroundAlpha * (1.0f - tintedAlpha);
+                    if (alpha <= 0.0f) {
+                        composite.setColor(x, y, 0);
+                        continue;
+                    }
+
+                    int red = blend(tinted & 255, tintRed, tintedAlpha, background & 255, backgroundAlpha, alpha);
+                    int green = blend(tinted >> 8 & 255, tintGreen, tintedAlpha, background >> 8 & 255, backgroundAlpha, alpha);
+                    int blue = blend(tinted >> 16 & 255, tintBlue, tintedAlpha, background >> 16 & 255, backgroundAlpha, alpha);
+
+                    composite.setColor(x, y, Math.round(alpha * 255.0f) << 24 | blue << 16 | green << 8 | red);
+
+                }
+
+            }
+
+            return composite;
+
+        }
+
+        catch (IOException e) {
+            SimpleImmersiveBags.LOGGER.warn("Couldn't composite bag screen textures {} and {}: {}", backgroundTextureId, tintedTextureId, e.getMessage());
+            return null;
+        }
+
+    }
+
+    private static int blend(int tintedChannel, float tint, float tintedAlpha, int backgroundChannel, float backgroundAlpha, float alpha) {
+        float channel = (tintedChannel * tint * tintedAlpha + backgroundChannel * backgroundAlpha * (1.0f - tintedAlpha)) / alpha;
+        return Math.min(255, Math.round(channel));
+    }
+
+    private static NativeImage readImage(ResourceManager resourceManager, Identifier textureId) throws IOException {
+        try (InputStream inputStream = resourceManager.open(textureId)) {
+            return NativeImage.read(NativeImage.Format.RGBA, inputStream);
+        }
+    }
+
+    private record Key(Identifier backgroundTextureId, Identifier tintedTextureId, int tint) {
+
+    }
+
+}
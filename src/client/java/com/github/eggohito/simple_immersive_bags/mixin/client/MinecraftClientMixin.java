@@ -1,5 +1,6 @@
 package com.github.eggohito.simple_immersive_bags.mixin.client;
 
+import com.github.eggohito.simple_immersive_bags.client.screen.BagOpenPrediction;
 import com.github.eggohito.simple_immersive_bags.networking.c2s.OpenBagC2SPacket;
 import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
@@ -22,8 +23,12 @@ public abstract class MinecraftClientMixin {
 	@WrapOperation(method = "handleInputEvents", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/MinecraftClient;setScreen(Lnet/minecraft/client/gui/screen/Screen;)V", ordinal = 0), slice = @Slice(from = @At(value = "INVOKE", target = "Lnet/minecraft/client/tutorial/TutorialManager;onInventoryOpened()V")))
 	private void sib$overrideInventoryScreen(MinecraftClient instance, Screen screen, Operation<Void> original) {
 
+		//  Open a provisional screen of the bag while waiting for the server to open it
 		BagUtil.getFirstOpenedBag(player).ifPresentOrElse(
-			slot -> ClientPlayNetworking.send(new OpenBagC2SPacket(slot)),
+			slot -> {
+				ClientPlayNetworking.send(new OpenBagC2SPacket(slot));
+				BagOpenPrediction.predict(instance, player, slot);
+			},
 			() -> original.call(instance, screen)
 		);
 
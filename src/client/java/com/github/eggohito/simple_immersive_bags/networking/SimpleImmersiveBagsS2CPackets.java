@@ -1,20 +1,23 @@
 package com.github.eggohito.simple_immersive_bags.networking;
 
 import com.github.eggohito.simple_immersive_bags.networking.s2c.OpenInventoryS2CPacket;
+import com.github.eggohito.simple_immersive_bags.networking.s2c.SyncBagSlotsS2CPacket;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.ingame.InventoryScreen;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.screen.ScreenHandler;
 
 public class SimpleImmersiveBagsS2CPackets {
 
     public static void registerAll() {
 
-        ClientPlayConnectionEvents.INIT.register((handler, client) ->
-            ClientPlayNetworking.registerReceiver(OpenInventoryS2CPacket.TYPE, SimpleImmersiveBagsS2CPackets::onInventoryOpened)
-        );
+        ClientPlayConnectionEvents.INIT.register((handler, client) -> {
+            ClientPlayNetworking.registerReceiver(OpenInventoryS2CPacket.TYPE, SimpleImmersiveBagsS2CPackets::onInventoryOpened);
+            ClientPlayNetworking.registerReceiver(SyncBagSlotsS2CPacket.TYPE, SimpleImmersiveBagsS2CPackets::onBagSlotsSynced);
+        });
 
     }
 
@@ -22,4 +25,17 @@ public class SimpleImmersiveBagsS2CPackets {
         MinecraftClient.getInstance().setScreen(new InventoryScreen(player));
     }
 
+    private static void onBagSlotsSynced(SyncBagSlotsS2CPacket packet, ClientPlayerEntity player, PacketSender responseSender) {
+
+        ScreenHandler screenHandler = player.currentScreenHandler;
+        if (screenHandler.syncId != packet.syncId()) {
+            return;
+        }
+
+        for (int i = 0; i < packet.slots().size(); i++) {
+            screenHandler.setStackInSlot(packet.slots().getInt(i), packet.revision(), packet.stacks().get(i));
+        }
+
+    }
+
 }
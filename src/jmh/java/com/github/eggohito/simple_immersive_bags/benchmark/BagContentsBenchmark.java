@@ -0,0 +1,68 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.collection.DefaultedList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BagContentsBenchmark {
+
+    @Param({"3x9", "6x9", "16x16"})
+    public String size;
+
+    private BagItem bagItem;
+    private ItemStack bagStack;
+
+    private DefaultedList<ItemStack> contents;
+    private NbtCompound serializedBagStack;
+
+    @Setup
+    public void setup() {
+        this.bagItem = BenchmarkEnvironment.getBagItem(size);
+        this.bagStack = BenchmarkEnvironment.createFilledBag(bagItem);
+        this.contents = BenchmarkEnvironment.createContents(bagItem);
+        this.serializedBagStack = bagStack.writeNbt(new NbtCompound());
+    }
+
+    @Benchmark
+    public DefaultedList<ItemStack> getContents() {
+        return bagItem.getContents(bagStack);
+    }
+
+    //  Copying the stack gives its NBT a new identity, so this measures reading a bag that hasn't been decoded yet
+    @Benchmark
+    public DefaultedList<ItemStack> getContentsOfCopiedStack() {
+        return bagItem.getContents(bagStack.copy());
+    }
+
+    @Benchmark
+    public ItemStack setContents() {
+        bagItem.setContents(bagStack, contents);
+        return bagStack;
+    }
+
+    //  Serializing the stack writes its contents in the compact format, and reading it back expands them
+    @Benchmark
+    public NbtCompound writeNbt() {
+        return bagStack.writeNbt(new NbtCompound());
+    }
+
+    @Benchmark
+    public ItemStack readNbt() {
+        return ItemStack.fromNbt(serializedBagStack);
+    }
+
+    @Benchmark
+    public boolean isEmpty() {
+        return bagItem.isEmpty(bagStack);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
+import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import io.netty.buffer.Unpooled;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BagInventoryBenchmark {
+
+    @Param({"3x9", "6x9", "16x16"})
+    public String size;
+
+    private PlayerEntity player;
+    private BagInventory bagInventory;
+
+    private PacketByteBuf sendBuf;
+    private PacketByteBuf receiveBuf;
+
+    @Setup
+    public void setup() {
+
+        BagItem bagItem = BenchmarkEnvironment.getBagItem(size);
+
+        this.player = BenchmarkEnvironment.createPlayer();
+        this.bagInventory = bagItem.asBagInventory(BenchmarkEnvironment.createFilledBag(bagItem));
+
+        bagInventory.load();
+
+        this.sendBuf = new PacketByteBuf(Unpooled.buffer());
+        this.receiveBuf = new PacketByteBuf(Unpooled.buffer());
+
+        bagInventory.send(receiveBuf);
+
+    }
+
+    @Benchmark
+    public BagInventory load() {
+        bagInventory.load();
+        return bagInventory;
+    }
+
+    //  Opening a bag only decodes the slots that are synced to its screen, which are the first 6 rows of larger bags
+    @Benchmark
+    public BagInventory loadVisibleSlots() {
+
+        bagInventory.load();
+
+        int visibleSlots = Math.min(bagInventory.size(), BagScreenHandler.MAX_VISIBLE_ROWS * bagInventory.getColumns());
+        for (int i = 0; i < visibleSlots; i++) {
+            bagInventory.getStack(i);
+        }
+
+        return bagInventory;
+
+    }
+
+    @Benchmark
+    public BagInventory loadAllSlots() {
+        bagInventory.load();
+        bagInventory.getHeldStacks();
+        return bagInventory;
+    }
+
+    @Benchmark
+    public BagInventory save() {
+        bagInventory.markDirty();
+        bagInventory.save();
+        return bagInventory;
+    }
+
+    @Benchmark
+    public BagInventory saveSingleSlot() {
+        bagInventory.markDirty(0);
+        bagInventory.save();
+        return bagInventory;
+    }
+
+    @Benchmark
+    public PacketByteBuf send() {
+        sendBuf.clear();
+        bagInventory.send(sendBuf);
+        return sendBuf;
+    }
+
+    @Benchmark
+    public BagInventory receive() {
+        receiveBuf.readerIndex(0);
+        return BagInventory.receive(player, receiveBuf);
+    }
+
+}
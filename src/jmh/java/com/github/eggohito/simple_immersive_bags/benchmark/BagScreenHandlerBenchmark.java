@@ -0,0 +1,52 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
+import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.screen.PlayerScreenHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BagScreenHandlerBenchmark {
+
+    @Param({"3x9", "6x9", "16x16"})
+    public String size;
+
+    private PlayerEntity player;
+
+    private BagScreenHandler bagScreenHandler;
+    private BagInventory bagInventory;
+
+    @Setup
+    public void setup() {
+
+        BagItem bagItem = BenchmarkEnvironment.getBagItem(size);
+
+        this.player = BenchmarkEnvironment.createPlayer();
+        this.bagInventory = bagItem.asBagInventory(BenchmarkEnvironment.createFilledBag(bagItem));
+        this.bagScreenHandler = new BagScreenHandler(1, player.getInventory(), player, bagInventory);
+
+    }
+
+    //  Moves a stack from the hotbar into the only empty slot of the bag, which is the last one, then clears that slot again
+    @Benchmark
+    public ItemStack quickMoveIntoBag() {
+
+        bagScreenHandler.getSlot(PlayerScreenHandler.HOTBAR_START).setStackNoCallbacks(new ItemStack(Items.COBBLESTONE, 64));
+        ItemStack movedStack = bagScreenHandler.quickMove(player, PlayerScreenHandler.HOTBAR_START);
+
+        bagInventory.removeStack(bagInventory.size() - 1);
+        return movedStack;
+
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import com.github.eggohito.simple_immersive_bags.util.BagState;
+import com.mojang.datafixers.util.Pair;
+import net.minecraft.nbt.NbtByte;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtOps;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BagStateBenchmark {
+
+    private NbtCompound legacyItemContainerNbt;
+    private NbtCompound itemContainerNbt;
+
+    @Setup
+    public void setup() {
+
+        //  A bag that was saved before the compact state ID existed
+        this.legacyItemContainerNbt = new NbtCompound();
+        legacyItemContainerNbt.putString("State", BagState.OPENED.asString());
+
+        //  A bag that was saved with both the state name and the compact state ID
+        this.itemContainerNbt = legacyItemContainerNbt.copy();
+        itemContainerNbt.putByte("StateId", BagState.OPENED.getId());
+
+    }
+
+    @Benchmark
+    public BagState decodeWithCodec() {
+        return BagState.CODEC
+            .decode(NbtOps.INSTANCE, legacyItemContainerNbt.get("State"))
+            .result()
+            .map(Pair::getFirst)
+            .orElse(BagState.NONE);
+    }
+
+    @Benchmark
+    public BagState lookupByName() {
+        return BagState.byName(legacyItemContainerNbt.getString("State"));
+    }
+
+    @Benchmark
+    public BagState lookupById() {
+        return itemContainerNbt.get("StateId") instanceof NbtByte stateIdNbt
+            ? BagState.byId(stateIdNbt.byteValue())
+            : BagState.byName(itemContainerNbt.getString("State"));
+    }
+
+}
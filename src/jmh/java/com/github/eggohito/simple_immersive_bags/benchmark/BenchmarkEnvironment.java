@@ -0,0 +1,114 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.google.common.base.Preconditions;
+import com.mojang.authlib.GameProfile;
+import net.fabricmc.api.ModInitializer;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.collection.DefaultedList;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class BenchmarkEnvironment implements ModInitializer {
+
+    public static final String MOD_NAMESPACE = "simple-immersive-bags-benchmarks";
+
+    private static final Item[] FILLER_ITEMS = {
+        Items.STONE,
+        Items.DIRT,
+        Items.OAK_LOG,
+        Items.IRON_INGOT,
+        Items.DIAMOND_SWORD,
+        Items.WRITTEN_BOOK
+    };
+
+    private static final Map<String, BagItem> BAG_ITEMS = new HashMap<>();
+    private static ServerWorld world;
+
+    @Override
+    public void onInitialize() {
+        registerBagItem(3, 9);
+        registerBagItem(6, 9);
+        registerBagItem(16, 16);
+    }
+
+    private static void registerBagItem(int rows, int columns) {
+
+        String size = rows + "x" + columns;
+        BagItem bagItem = SimpleImmersiveBags.registerItem(new Identifier(MOD_NAMESPACE, "bag_" + size), () -> new BagItem(SimpleImmersiveBags.id("textures/gui/backpack.png"), EquipmentSlot.CHEST, rows, columns));
+
+        BAG_ITEMS.put(size, bagItem);
+
+    }
+
+    public static BagItem getBagItem(String size) {
+        return Preconditions.checkNotNull(BAG_ITEMS.get(size), "No benchmark bag item with size %s has been registered!", size);
+    }
+
+    public static ServerWorld getWorld() {
+        return Preconditions.checkNotNull(world, "Benchmarks can only be run from the benchmark game test!");
+    }
+
+    public static void setWorld(ServerWorld world) {
+        BenchmarkEnvironment.world = world;
+    }
+
+    public static PlayerEntity createPlayer() {
+        return new PlayerEntity(getWorld(), BlockPos.ORIGIN, 0.0f, new GameProfile(UUID.randomUUID(), "benchmark")) {
+
+            @Override
+            public boolean isSpectator() {
+                return false;
+            }
+
+            @Override
+            public boolean isCreative() {
+                return false;
+            }
+
+        };
+    }
+
+    //  Fills every slot of the bag except the last one with a mix of plain and NBT-carrying stacks, which is the worst case
+    //  for anything that has to find an empty slot
+    public static DefaultedList<ItemStack> createContents(BagItem bagItem) {
+
+        DefaultedList<ItemStack> contents = bagItem.getContents(ItemStack.EMPTY);
+        for (int i = 0; i < contents.size() - 1; i++) {
+
+            Item fillerItem = FILLER_ITEMS[i % FILLER_ITEMS.length];
+            ItemStack stack = new ItemStack(fillerItem, 1 + i % fillerItem.getMaxCount());
+
+            if (i % 4 == 0) {
+                stack.setCustomName(Text.literal("Benchmark stack #" + i));
+            }
+
+            contents.set(i, stack);
+
+        }
+
+        return contents;
+
+    }
+
+    public static ItemStack createFilledBag(BagItem bagItem) {
+
+        ItemStack bagStack = bagItem.getDefaultStack();
+        bagItem.setContents(bagStack, createContents(bagItem));
+
+        return bagStack;
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.github.eggohito.simple_immersive_bags.benchmark;
+
+import net.fabricmc.fabric.api.gametest.v1.FabricGameTest;
+import net.minecraft.test.GameTest;
+import net.minecraft.test.GameTestException;
+import net.minecraft.test.TestContext;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+public class BenchmarkGameTest implements FabricGameTest {
+
+    @GameTest(templateName = EMPTY_STRUCTURE)
+    public void runBenchmarks(TestContext context) {
+
+        BenchmarkEnvironment.setWorld(context.getWorld());
+
+        String[] args = Arrays.stream(System.getProperty("simple-immersive-bags.jmh.args", "").split(" "))
+            .filter(arg -> !arg.isBlank())
+            .toArray(String[]::new);
+
+        try {
+
+            //  The benchmarks can't be forked, since the forked JVMs wouldn't have a game instance to run in
+            Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .forks(0)
+                .build();
+
+            new Runner(options).run();
+
+        } catch (CommandLineOptionException | RunnerException e) {
+            throw new GameTestException("Failed to run the benchmarks: " + e.getMessage());
+        }
+
+        context.complete();
+
+    }
+
+}
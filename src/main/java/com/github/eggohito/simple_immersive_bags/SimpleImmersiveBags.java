@@ -1,15 +1,26 @@
 package com.github.eggohito.simple_immersive_bags;
 
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.command.SimpleImmersiveBagsCommand;
 import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
 import com.github.eggohito.simple_immersive_bags.content.item.DyeableBagItem;
 import com.github.eggohito.simple_immersive_bags.content.item.EnderBagItem;
+import com.github.eggohito.simple_immersive_bags.inventory.BagSavePipeline;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.networking.SimpleImmersiveBagsC2SPackets;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandlerTypes;
+import com.github.eggohito.simple_immersive_bags.transfer.WornBagStorages;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.itemgroup.v1.ItemGroupEvents;
 import net.fabricmc.fabric.api.lookup.v1.item.ItemApiLookup;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.Storage;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.item.Item;
@@ -32,6 +43,11 @@ public class SimpleImmersiveBags implements ModInitializer {
 	public static final String ITEM_CONTAINER_ID = id("item_container").toString();
 	public static final ItemApiLookup<BagContainer, Void> ITEM_CONTAINER = ItemApiLookup.get(new Identifier(ITEM_CONTAINER_ID), BagContainer.class, Void.class);
 
+	//	The storage of the contents of bag items. Bags worn by entities are exposed through it to hoppers (see WornBagStorages), while
+	//	bags in other containers can be reached by querying it with the context of their slot, e.g. ContainerItemContext#ofSingleSlot
+	@SuppressWarnings("UnstableApiUsage")
+	public static final ItemApiLookup<Storage<ItemVariant>, ContainerItemContext> ITEM_STORAGE = ItemApiLookup.get(id("item_storage"), Storage.asClass(), ContainerItemContext.class);
+
 	public static String VERSION;
 	public static int[] SEMANTIC_VERSION;
 
@@ -57,6 +73,14 @@ public class SimpleImmersiveBags implements ModInitializer {
 		registerAllItems();
 		BagScreenHandlerTypes.registerAll();
 		SimpleImmersiveBagsC2SPackets.registerAll();
+		WornBagStorages.register();
+
+		CommandRegistrationCallback.EVENT.register(SimpleImmersiveBagsCommand::register);
+		ServerTickEvents.END_SERVER_TICK.register(BagMetrics::onServerTick);
+		ServerTickEvents.END_SERVER_TICK.register(BagSavePipeline::onServerTick);
+		ServerLifecycleEvents.SERVER_STARTING.register(BagSavePipeline::onServerStarting);
+		ServerLifecycleEvents.SERVER_STOPPING.register(BagSavePipeline::onServerStopping);
+		ServerLifecycleEvents.SERVER_STOPPED.register(BagSavePipeline::onServerStopped);
 
 		LOGGER.info("Simple Immersive Bags {} has been initialized!", VERSION);
 
@@ -74,6 +98,7 @@ public class SimpleImmersiveBags implements ModInitializer {
 		);
 
 		//	Register callback event for stuff
+		ServerEntityEvents.EQUIPMENT_CHANGE.register((entity, equipmentSlot, previousStack, currentStack) -> BagUtil.invalidateOpenedBag(entity));
 		ServerEntityEvents.EQUIPMENT_CHANGE.register(BagItem::onEquipmentUpdate);
 
 	}
@@ -5,6 +5,11 @@ import com.github.eggohito.simple_immersive_bags.util.BagState;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.collection.DefaultedList;
+import org.apache.commons.lang3.mutable.MutableInt;
+
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface BagContainer {
 
@@ -12,10 +17,77 @@ public interface BagContainer {
 
     void setContents(ItemStack sourceStack, DefaultedList<ItemStack> replacement);
 
+    default void setContents(ItemStack sourceStack, DefaultedList<ItemStack> replacement, BitSet changedSlots) {
+        this.setContents(sourceStack, replacement);
+    }
+
+    //  Visits the non-empty stacks of the bag. The visited stacks may be shared with the bag container, so they must not be modified,
+    //  and have to be copied if they're kept around
+    default void forEachStack(ItemStack sourceStack, Consumer<ItemStack> action) {
+
+        for (ItemStack stack : this.getContents(sourceStack)) {
+
+            if (!stack.isEmpty()) {
+                action.accept(stack);
+            }
+
+        }
+
+    }
+
+    //  Same as #forEachStack, except it stops visiting the stacks of the bag as soon as one of them matches
+    default boolean anyMatch(ItemStack sourceStack, Predicate<ItemStack> predicate) {
+
+        for (ItemStack stack : this.getContents(sourceStack)) {
+
+            if (!stack.isEmpty() && predicate.test(stack)) {
+                return true;
+            }
+
+        }
+
+        return false;
+
+    }
+
+    default int countItems(ItemStack sourceStack, Predicate<ItemStack> predicate) {
+
+        int count = 0;
+        for (ItemStack stack : this.getContents(sourceStack)) {
+
+            if (!stack.isEmpty() && predicate.test(stack)) {
+                count += stack.getCount();
+            }
+
+        }
+
+        return count;
+
+    }
+
     default boolean isEmpty(ItemStack sourceStack) {
+        return !this.anyMatch(sourceStack, stack -> true);
+    }
+
+    default boolean isFull(ItemStack sourceStack) {
         return this.getContents(sourceStack)
             .stream()
-            .allMatch(ItemStack::isEmpty);
+            .noneMatch(ItemStack::isEmpty);
+    }
+
+    //  The amount of slots of the bag that aren't empty
+    default int getOccupiedSlots(ItemStack sourceStack) {
+
+        MutableInt occupiedSlots = new MutableInt();
+        this.forEachStack(sourceStack, stack -> occupiedSlots.increment());
+
+        return occupiedSlots.intValue();
+
+    }
+
+    //  The total amount of items in the bag
+    default int getItemCount(ItemStack sourceStack) {
+        return this.countItems(sourceStack, stack -> true);
     }
 
     BagState getState(ItemStack sourceStack);
@@ -0,0 +1,105 @@
+package com.github.eggohito.simple_immersive_bags.command;
+
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.content.item.EnderBagItem;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetric;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
+import com.github.eggohito.simple_immersive_bags.util.BagState;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.item.ItemStack;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import static net.minecraft.server.command.CommandManager.argument;
+import static net.minecraft.server.command.CommandManager.literal;
+
+public class SimpleImmersiveBagsCommand {
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher, CommandRegistryAccess registryAccess, CommandManager.RegistrationEnvironment environment) {
+        dispatcher.register(
+            literal("sib")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(literal("stats")
+                    .executes(SimpleImmersiveBagsCommand::printStats)
+                    .then(literal("reset")
+                        .executes(SimpleImmersiveBagsCommand::resetStats))
+                    .then(literal("log")
+                        .then(argument("seconds", IntegerArgumentType.integer(0))
+                            .executes(SimpleImmersiveBagsCommand::setLogInterval))))
+                .then(literal("capacity")
+                    .then(argument("rows", IntegerArgumentType.integer(1))
+                        .then(argument("columns", IntegerArgumentType.integer(1))
+                            .executes(SimpleImmersiveBagsCommand::setCapacity))))
+        );
+    }
+
+    private static int printStats(CommandContext<ServerCommandSource> context) {
+
+        ServerCommandSource source = context.getSource();
+        source.sendFeedback(() -> Text.literal("Simple Immersive Bags metrics:"), false);
+
+        for (BagMetric metric : BagMetrics.getAll()) {
+            source.sendFeedback(() -> Text.literal(" - " + metric.getName() + ": " + metric.describe()), false);
+        }
+
+        return BagMetrics.getAll().size();
+
+    }
+
+    private static int resetStats(CommandContext<ServerCommandSource> context) {
+
+        BagMetrics.resetAll();
+        context.getSource().sendFeedback(() -> Text.literal("Reset the Simple Immersive Bags metrics"), true);
+
+        return 1;
+
+    }
+
+    private static int setLogInterval(CommandContext<ServerCommandSource> context) {
+
+        int seconds = IntegerArgumentType.getInteger(context, "seconds");
+        BagMetrics.setLogInterval(seconds * 20);
+
+        context.getSource().sendFeedback(() -> seconds > 0
+            ? Text.literal("Logging the Simple Immersive Bags metrics every " + seconds + " second(s)")
+            : Text.literal("Stopped logging the Simple Immersive Bags metrics"), true);
+
+        return seconds;
+
+    }
+
+    //  Changes the capacity of the bag held in the main hand of the player running the command
+    private static int setCapacity(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+
+        ServerCommandSource source = context.getSource();
+        ItemStack stack = source.getPlayerOrThrow().getMainHandStack();
+
+        int rows = IntegerArgumentType.getInteger(context, "rows");
+        int columns = IntegerArgumentType.getInteger(context, "columns");
+
+        if (!(stack.getItem() instanceof BagItem bagItem) || bagItem instanceof EnderBagItem) {
+            source.sendError(Text.literal("You must be holding a bag in your main hand"));
+            return 0;
+        }
+
+        if (bagItem.getState(stack) == BagState.OPENED) {
+            source.sendError(Text.literal("The bag must be closed to change its capacity"));
+            return 0;
+        }
+
+        if (!bagItem.setCapacity(stack, rows, columns)) {
+            source.sendError(Text.literal("Invalid capacity of " + rows + "x" + columns + "; it can't exceed " + BagItem.MAX_SIZE + " slots or leave items outside the bag"));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Text.literal("Changed the capacity of the bag to " + rows + "x" + columns), true);
+        return rows * columns;
+
+    }
+
+}
@@ -4,24 +4,35 @@ import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
 import com.github.eggohito.simple_immersive_bags.duck.EntityBagUpdateStatus;
 import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
+import com.github.eggohito.simple_immersive_bags.inventory.BagSavePipeline;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.networking.s2c.OpenInventoryS2CPacket;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import com.github.eggohito.simple_immersive_bags.transfer.BagStorage;
+import com.github.eggohito.simple_immersive_bags.util.BagNbtFormat;
 import com.github.eggohito.simple_immersive_bags.util.BagState;
 import com.github.eggohito.simple_immersive_bags.util.BagUpdateStatus;
 import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import com.google.common.base.Preconditions;
-import com.mojang.datafixers.util.Pair;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import it.unimi.dsi.fastutil.ints.Int2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectSortedMap;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.Storage;
 import net.minecraft.block.DispenserBlock;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.inventory.Inventories;
 import net.minecraft.inventory.StackReference;
 import net.minecraft.item.*;
+import net.minecraft.nbt.NbtByte;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
 import net.minecraft.screen.slot.Slot;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -33,11 +44,34 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.TypedActionResult;
 import net.minecraft.util.collection.DefaultedList;
 import net.minecraft.world.World;
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 @SuppressWarnings("unused")
 public class BagItem extends Item implements Equipment, BagContainer {
 
+    //  Decoded contents keyed by the identity of the "Items" list of the bag's item container. The keys are weakly referenced,
+    //  so the entries of discarded stacks are dropped alongside their NBT
+    private static final Cache<NbtList, DefaultedList<ItemStack>> CONTENTS_CACHE = CacheBuilder.newBuilder()
+        .weakKeys()
+        .maximumSize(1024)
+        .build();
+
+    //  "Items" lists that are known to be sorted by their slot index (without duplicate slots), keyed by identity, so that each list is
+    //  only checked once. Lists that weren't written by this mod (e.g. by /give, loot tables or other mods) may not be
+    private static final Cache<NbtList, Boolean> SORTED_ITEMS = CacheBuilder.newBuilder()
+        .weakKeys()
+        .maximumSize(1024)
+        .build();
+
     protected final Identifier screenTextureId;
     protected final EquipmentSlot equipSlot;
 
@@ -46,6 +80,12 @@ public class BagItem extends Item implements Equipment, BagContainer {
     protected final int initialRows;
     protected final int initialColumns;
 
+    private final DefaultedList<ItemStack> emptyContents;
+
+    //  The slot index of each entry of the "Items" list is stored as a short past the first 256 slots (see BagNbtFormat#putSlot), which
+    //  limits the size of a bag. Only the occupied slots of a bag take up space in its NBT, no matter how large it is
+    public static final int MAX_SIZE = Short.MAX_VALUE + 1;
+
     public BagItem(Identifier screenTextureId, EquipmentSlot equipSlot, int initialRows, int initialColumns) {
         this(screenTextureId, equipSlot, SoundEvents.ITEM_ARMOR_EQUIP_GENERIC, new Settings().maxDamage(-1), initialRows, initialColumns);
     }
@@ -59,12 +99,15 @@ public class BagItem extends Item implements Equipment, BagContainer {
 
         Preconditions.checkArgument(initialRows > 0, "Row argument cannot be equal or less than 0!");
         Preconditions.checkArgument(initialColumns > 0, "Column argument cannot be equal or less than 0!");
+        Preconditions.checkArgument((long) initialRows * initialColumns <= MAX_SIZE, "Size of the bag (rows * columns) cannot be greater than " + MAX_SIZE + "!");
 
         SimpleImmersiveBags.ITEM_CONTAINER.registerSelf(this);
+        SimpleImmersiveBags.ITEM_STORAGE.registerForItems(this::findStorage, this);
         DispenserBlock.registerBehavior(this, ArmorItem.DISPENSER_BEHAVIOR);
 
         this.initialRows = initialRows;
         this.initialColumns = initialColumns;
+        this.emptyContents = DefaultedList.ofSize(initialRows * initialColumns, ItemStack.EMPTY);
 
         this.screenTextureId = screenTextureId;
         this.equipSlot = equipSlot;
@@ -95,7 +138,14 @@ public class BagItem extends Item implements Equipment, BagContainer {
 
     @Override
     public void onItemEntityDestroyed(ItemEntity entity) {
-        ItemUsage.spawnItemContents(entity, this.getContents(entity.getStack()).stream());
+
+        World world = entity.getWorld();
+        if (world.isClient) {
+            return;
+        }
+
+        this.forEachStack(entity.getStack(), stack -> world.spawnEntity(new ItemEntity(world, entity.getX(), entity.getY(), entity.getZ(), stack.copy())));
+
     }
 
     @Override
@@ -139,41 +189,681 @@ public class BagItem extends Item implements Equipment, BagContainer {
         this.setState(stack, BagState.CLOSED);
     }
 
+    //  Called whenever the NBT of a bag stack is read or set, which expands contents that were saved in the compact format
+    @Override
+    public void postProcessNbt(NbtCompound nbt) {
+
+        super.postProcessNbt(nbt);
+
+        if (nbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt) {
+            BagNbtFormat.expand(itemContainerNbt);
+        }
+
+    }
+
     @Override
     public DefaultedList<ItemStack> getContents(ItemStack sourceStack) {
 
-        DefaultedList<ItemStack> contents = DefaultedList.ofSize(initialRows * initialColumns, ItemStack.EMPTY);
-        NbtCompound stackNbt;
+        DefaultedList<ItemStack> cachedContents = this.getCachedContents(sourceStack);
+        DefaultedList<ItemStack> contents = DefaultedList.ofSize(cachedContents.size(), ItemStack.EMPTY);
 
-        if ((stackNbt = sourceStack.getNbt()) == null || !stackNbt.contains(SimpleImmersiveBags.ITEM_CONTAINER_ID)) {
-            return contents;
+        //  Copy the cached stacks, since the caller is free to modify the returned contents
+        for (int i = 0; i < contents.size(); i++) {
+            contents.set(i, cachedContents.get(i).copy());
         }
 
-        Inventories.readNbt(stackNbt.getCompound(SimpleImmersiveBags.ITEM_CONTAINER_ID), contents);
         return contents;
 
     }
 
+    //  A read-only view of the decoded contents shared with the cache, for internal callers that only read the stacks (or copy just
+    //  the ones they keep), so that they don't have to copy the whole bag through #getContents. The stacks must not be modified!
+    @ApiStatus.Internal
+    public List<ItemStack> getContentsView(ItemStack sourceStack) {
+        return Collections.unmodifiableList(this.getCachedContents(sourceStack));
+    }
+
     @Override
     public void setContents(ItemStack sourceStack, DefaultedList<ItemStack> contents) {
+
+        BagSavePipeline.complete(sourceStack);
+
+        NbtCompound itemContainerNbt = sourceStack.getOrCreateSubNbt(SimpleImmersiveBags.ITEM_CONTAINER_ID);
+        if (itemContainerNbt.contains("Items", NbtElement.LIST_TYPE)) {
+            CONTENTS_CACHE.invalidate(itemContainerNbt.get("Items"));
+        }
+
+        //  Written the same way as Inventories#writeNbt, except that the slots aren't limited to a byte
+        NbtList itemsNbt = new NbtList();
+        for (int i = 0; i < contents.size(); i++) {
+
+            NbtCompound entryNbt = encodeEntry(i, contents.get(i));
+            if (entryNbt != null) {
+                itemsNbt.add(entryNbt);
+            }
+
+        }
+
+        itemContainerNbt.put("Items", itemsNbt);
+        SORTED_ITEMS.put(itemsNbt, Boolean.TRUE);
+
+        BagMetrics.CONTENTS_BYTES_WRITTEN.record(itemsNbt.getSizeInBytes());
+
+        int occupiedSlots = 0;
+        int itemCount = 0;
+
+        for (ItemStack stack : contents) {
+
+            if (!stack.isEmpty()) {
+                occupiedSlots++;
+                itemCount += stack.getCount();
+            }
+
+        }
+
+        itemContainerNbt.putInt("Occupied", occupiedSlots);
+        itemContainerNbt.putInt("ItemCount", itemCount);
+
+        //  Prime the cache with a copy of the written contents, so the next read of the bag doesn't have to decode them again
+        DefaultedList<ItemStack> cachedContents = DefaultedList.ofSize(contents.size(), ItemStack.EMPTY);
+        for (int i = 0; i < cachedContents.size(); i++) {
+            cachedContents.set(i, contents.get(i).copy());
+        }
+
+        CONTENTS_CACHE.put(itemsNbt, cachedContents);
+
+    }
+
+    @Override
+    public void setContents(ItemStack sourceStack, DefaultedList<ItemStack> contents, BitSet changedSlots) {
+
+        if (changedSlots.cardinality() >= contents.size()) {
+            this.setContents(sourceStack, contents);
+            return;
+        }
+
+        int[] slots = changedSlots.stream()
+            .filter(slot -> slot < contents.size())
+            .toArray();
+
+        ItemStack[] stacks = new ItemStack[slots.length];
+        NbtCompound[] entries = new NbtCompound[slots.length];
+
+        for (int i = 0; i < slots.length; i++) {
+            stacks[i] = contents.get(slots[i]);
+            entries[i] = encodeEntry(slots[i], stacks[i]);
+        }
+
+        this.applyEntries(sourceStack, slots, stacks, entries);
+
+    }
+
+    //  Encodes the entry of the specified slot for the "Items" list, or returns null if the slot is empty. This doesn't touch the
+    //  bag stack, so it's safe to call off the server thread
+    @Nullable
+    public static NbtCompound encodeEntry(int slot, ItemStack stack) {
+
+        if (stack.isEmpty()) {
+            return null;
+        }
+
+        NbtCompound entryNbt = new NbtCompound();
+
+        BagNbtFormat.putSlot(entryNbt, slot);
+        stack.writeNbt(entryNbt);
+
+        return entryNbt;
+
+    }
+
+    //  Patches the (already encoded) entries of the specified slots into the "Items" list of the bag stack. The slots must be in
+    //  ascending order, and the null entries are of the slots that are now empty
+    @ApiStatus.Internal
+    public void applyEntries(ItemStack sourceStack, int[] slots, ItemStack[] stacks, @Nullable NbtCompound[] entries) {
+
+        BagSavePipeline.complete(sourceStack);
+
         NbtCompound itemContainerNbt = sourceStack.getOrCreateSubNbt(SimpleImmersiveBags.ITEM_CONTAINER_ID);
-        Inventories.writeNbt(itemContainerNbt, contents);
+        NbtList itemsNbt = getOrCreateItemsNbt(itemContainerNbt);
+
+        DefaultedList<ItemStack> cachedContents = CONTENTS_CACHE.getIfPresent(itemsNbt);
+        int bytesWritten = 0;
+
+        for (int i = 0; i < slots.length; i++) {
+
+            int slot = slots[i];
+            bytesWritten += this.putEntry(itemContainerNbt, itemsNbt, slot, entries[i]);
+
+            //  The list keeps its identity, so update the cached contents in place instead of invalidating them
+            if (cachedContents != null && slot < cachedContents.size()) {
+                cachedContents.set(slot, stacks[i].copy());
+            }
+
+        }
+
+        BagMetrics.CONTENTS_BYTES_WRITTEN.record(bytesWritten);
+
+    }
+
+    //  Returns the "Items" list of the specified item container, replacing it with an empty list if it isn't a list of compounds
+    @ApiStatus.Internal
+    public static NbtList getOrCreateItemsNbt(NbtCompound itemContainerNbt) {
+
+        if (itemContainerNbt.get("Items") instanceof NbtList itemsNbt && (itemsNbt.isEmpty() || itemsNbt.getHeldType() == NbtElement.COMPOUND_TYPE)) {
+            return itemsNbt;
+        }
+
+        NbtList itemsNbt = new NbtList();
+
+        itemContainerNbt.put("Items", itemsNbt);
+        itemContainerNbt.remove("Occupied");
+        itemContainerNbt.remove("ItemCount");
+
+        return itemsNbt;
+
+    }
+
+    //  Replaces the entry of the specified slot in the "Items" list, or removes it if the new entry is null, and patches the occupancy
+    //  summary to match. This relies on the entries being sorted by their slot index, which is how both #setContents and this
+    //  method write them, so lists that aren't are sorted first. Returns the size of the new entry in bytes
+    @ApiStatus.Internal
+    public int putEntry(NbtCompound itemContainerNbt, NbtList itemsNbt, int slot, @Nullable NbtCompound entryNbt) {
+
+        if (!isSorted(itemsNbt)) {
+            sortEntries(itemContainerNbt, itemsNbt);
+        }
+
+        //  Bags saved before the summary existed don't have one to patch, so count it from scratch first
+        if (!hasSummary(itemContainerNbt)) {
+            this.updateSummary(itemContainerNbt, itemsNbt);
+        }
+
+        int occupiedSlots = itemContainerNbt.getInt("Occupied");
+        int itemCount = itemContainerNbt.getInt("ItemCount");
+
+        int entryIndex = findEntryIndex(itemsNbt, slot);
+        int bytesWritten = 0;
+
+        if (entryIndex >= 0) {
+            occupiedSlots--;
+            itemCount -= itemsNbt.getCompound(entryIndex).getByte("Count");
+        }
+
+        if (entryNbt != null) {
+
+            occupiedSlots++;
+            itemCount += entryNbt.getByte("Count");
+            bytesWritten = entryNbt.getSizeInBytes();
+
+            if (entryIndex >= 0) {
+                itemsNbt.set(entryIndex, entryNbt);
+            }
+
+            else {
+                itemsNbt.add(-entryIndex - 1, entryNbt);
+            }
+
+        }
+
+        else if (entryIndex >= 0) {
+            itemsNbt.remove(entryIndex);
+        }
+
+        itemContainerNbt.putInt("Occupied", occupiedSlots);
+        itemContainerNbt.putInt("ItemCount", itemCount);
+
+        return bytesWritten;
+
+    }
+
+    //  Decodes the stack of a single slot of the bag. The decoded contents are reused if they're cached, otherwise only the entry
+    //  of the slot is decoded, which doesn't populate the cache
+    public ItemStack getStack(ItemStack sourceStack, int slot) {
+
+        BagSavePipeline.complete(sourceStack);
+
+        NbtCompound itemContainerNbt = getItemContainerNbt(sourceStack);
+        int size = this.getSize(itemContainerNbt);
+
+        if (itemContainerNbt == null || slot < 0 || slot >= size || !(itemContainerNbt.get("Items") instanceof NbtList itemsNbt)) {
+            return ItemStack.EMPTY;
+        }
+
+        DefaultedList<ItemStack> cachedContents = CONTENTS_CACHE.getIfPresent(itemsNbt);
+        if (cachedContents != null && cachedContents.size() == size) {
+            BagMetrics.CONTENTS_CACHE_HITS.increment();
+            return cachedContents.get(slot).copy();
+        }
+
+        NbtCompound entryNbt = getEntry(itemContainerNbt, slot);
+        return entryNbt != null
+            ? ItemStack.fromNbt(entryNbt)
+            : ItemStack.EMPTY;
+
+    }
+
+    //  Returns the entry of the specified slot in the "Items" list of the specified item container, or null if the slot is empty
+    @Nullable
+    @ApiStatus.Internal
+    public static NbtCompound getEntry(NbtCompound itemContainerNbt, int slot) {
+
+        if (!(itemContainerNbt.get("Items") instanceof NbtList itemsNbt) || (!itemsNbt.isEmpty() && itemsNbt.getHeldType() != NbtElement.COMPOUND_TYPE)) {
+            return null;
+        }
+
+        int entryIndex = isSorted(itemsNbt)
+            ? findEntryIndex(itemsNbt, slot)
+            : findLastEntryIndex(itemsNbt, slot);
+
+        return entryIndex >= 0
+            ? itemsNbt.getCompound(entryIndex)
+            : null;
+
+    }
+
+    //  The capacity of a bag can differ per stack. Stacks without their own capacity (or with an invalid one) use the initial capacity
+    //  of the item instead
+    public int getRows(ItemStack sourceStack) {
+        NbtCompound itemContainerNbt = getItemContainerNbt(sourceStack);
+        return this.hasCapacity(itemContainerNbt)
+            ? itemContainerNbt.getInt("Rows")
+            : initialRows;
+    }
+
+    public int getColumns(ItemStack sourceStack) {
+        NbtCompound itemContainerNbt = getItemContainerNbt(sourceStack);
+        return this.hasCapacity(itemContainerNbt)
+            ? itemContainerNbt.getInt("Columns")
+            : initialColumns;
+    }
+
+    public int getSize(ItemStack sourceStack) {
+        return this.getSize(getItemContainerNbt(sourceStack));
+    }
+
+    @ApiStatus.Internal
+    public int getSize(@Nullable NbtCompound itemContainerNbt) {
+        return this.hasCapacity(itemContainerNbt)
+            ? itemContainerNbt.getInt("Rows") * itemContainerNbt.getInt("Columns")
+            : emptyContents.size();
+    }
+
+    //  Changes the capacity of the bag stack. Returns false if the capacity is invalid, or if it would leave stacks outside the bag
+    public boolean setCapacity(ItemStack sourceStack, int rows, int columns) {
+
+        if (!isValidCapacity(rows, columns)) {
+            return false;
+        }
+
+        //  A pending save may still add stacks to the slots that are checked below
+        BagSavePipeline.complete(sourceStack);
+
+        int size = rows * columns;
+        if (this.anySlotMatches(sourceStack, slot -> slot >= size)) {
+            return false;
+        }
+
+        //  The cached contents are sized after the previous capacity, so they're dropped alongside the "Items" list. So is the summary,
+        //  which only counts the slots within the previous capacity
+        NbtCompound itemContainerNbt = sourceStack.getOrCreateSubNbt(SimpleImmersiveBags.ITEM_CONTAINER_ID);
+        if (itemContainerNbt.get("Items") instanceof NbtList itemsNbt) {
+            CONTENTS_CACHE.invalidate(itemsNbt);
+            itemContainerNbt.remove("Occupied");
+            itemContainerNbt.remove("ItemCount");
+        }
+
+        itemContainerNbt.putInt("Rows", rows);
+        itemContainerNbt.putInt("Columns", columns);
+
+        return true;
+
+    }
+
+    private boolean anySlotMatches(ItemStack sourceStack, IntPredicate predicate) {
+
+        NbtCompound itemContainerNbt = getItemContainerNbt(sourceStack);
+        if (itemContainerNbt == null || !(itemContainerNbt.get("Items") instanceof NbtList itemsNbt)) {
+            return false;
+        }
+
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            if (predicate.test(BagNbtFormat.getSlot(itemsNbt.getCompound(i)))) {
+                return true;
+            }
+
+        }
+
+        return false;
+
+    }
+
+    private boolean hasCapacity(@Nullable NbtCompound itemContainerNbt) {
+        return itemContainerNbt != null
+            && itemContainerNbt.contains("Rows", NbtElement.INT_TYPE)
+            && itemContainerNbt.contains("Columns", NbtElement.INT_TYPE)
+            && isValidCapacity(itemContainerNbt.getInt("Rows"), itemContainerNbt.getInt("Columns"));
+    }
+
+    public static boolean isValidCapacity(int rows, int columns) {
+        return rows > 0
+            && columns > 0
+            && (long) rows * columns <= MAX_SIZE;
+    }
+
+    @Nullable
+    private static NbtCompound getItemContainerNbt(ItemStack sourceStack) {
+        NbtCompound stackNbt = sourceStack.getNbt();
+        return stackNbt != null && stackNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt
+            ? itemContainerNbt
+            : null;
+    }
+
+    @Override
+    public void forEachStack(ItemStack sourceStack, Consumer<ItemStack> action) {
+        this.walkContents(sourceStack, stack -> {
+            action.accept(stack);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean anyMatch(ItemStack sourceStack, Predicate<ItemStack> predicate) {
+        return !this.walkContents(sourceStack, stack -> !predicate.test(stack));
+    }
+
+    @Override
+    public int countItems(ItemStack sourceStack, Predicate<ItemStack> predicate) {
+
+        MutableInt count = new MutableInt();
+        this.walkContents(sourceStack, stack -> {
+
+            if (predicate.test(stack)) {
+                count.add(stack.getCount());
+            }
+
+            return true;
+
+        });
+
+        return count.intValue();
+
+    }
+
+    @Override
+    public boolean isEmpty(ItemStack sourceStack) {
+        return this.getOccupiedSlots(sourceStack) == 0;
+    }
+
+    @Override
+    public boolean isFull(ItemStack sourceStack) {
+        return this.getOccupiedSlots(sourceStack) >= this.getSize(sourceStack);
+    }
+
+    @Override
+    public int getOccupiedSlots(ItemStack sourceStack) {
+        return this.getSummary(sourceStack, "Occupied");
+    }
+
+    @Override
+    public int getItemCount(ItemStack sourceStack) {
+        return this.getSummary(sourceStack, "ItemCount");
+    }
+
+    //  Reads a value of the occupancy summary of the bag, which is kept alongside the "Items" list so that checks like #isEmpty don't
+    //  have to decode anything. Bags saved before the summary existed have it counted instead, without storing it, since this is also
+    //  called from read-only queries on the client. The summary is only stored once the contents are saved
+    private int getSummary(ItemStack sourceStack, String key) {
+
+        BagSavePipeline.complete(sourceStack);
+
+        NbtCompound stackNbt = sourceStack.getNbt();
+        if (stackNbt == null || !(stackNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt) || !(itemContainerNbt.get("Items") instanceof NbtList itemsNbt)) {
+            return 0;
+        }
+
+        return hasSummary(itemContainerNbt)
+            ? itemContainerNbt.getInt(key)
+            : this.countSummary(itemContainerNbt, itemsNbt, key);
+
+    }
+
+    //  Stores the summary counted from the entries of the "Items" list. Only called when the contents are saved
+    private void updateSummary(NbtCompound itemContainerNbt, NbtList itemsNbt) {
+        itemContainerNbt.putInt("Occupied", this.countSummary(itemContainerNbt, itemsNbt, "Occupied"));
+        itemContainerNbt.putInt("ItemCount", this.countSummary(itemContainerNbt, itemsNbt, "ItemCount"));
+    }
+
+    //  Counts a value of the summary from the entries of the "Items" list. Entries of unknown items are counted as well, since they're
+    //  still stored in the bag. Lists with more than one entry for a slot are counted as if they were sorted first
+    private int countSummary(NbtCompound itemContainerNbt, NbtList itemsNbt, String key) {
+
+        int size = this.getSize(itemContainerNbt);
+        NbtCompound[] entries = new NbtCompound[size];
+
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            NbtCompound entryNbt = itemsNbt.getCompound(i);
+            int slot = BagNbtFormat.getSlot(entryNbt);
+
+            if (slot < size && !entryNbt.isEmpty()) {
+                entries[slot] = entryNbt;
+            }
+
+        }
+
+        int value = 0;
+        for (NbtCompound entryNbt : entries) {
+
+            if (entryNbt != null) {
+                value += key.equals("Occupied") ? 1 : entryNbt.getByte("Count");
+            }
+
+        }
+
+        return value;
+
+    }
+
+    private static boolean hasSummary(NbtCompound itemContainerNbt) {
+        return itemContainerNbt.contains("Occupied", NbtElement.INT_TYPE)
+            && itemContainerNbt.contains("ItemCount", NbtElement.INT_TYPE);
+    }
+
+    //  Walks the non-empty stacks of the bag until the visitor returns false, in which case this returns false as well. The decoded
+    //  contents are reused if they're cached, otherwise the entries of the "Items" list are decoded one at a time, so a walk that
+    //  stops early never decodes the rest of them
+    private boolean walkContents(ItemStack sourceStack, Predicate<ItemStack> visitor) {
+
+        BagSavePipeline.complete(sourceStack);
+
+        NbtCompound stackNbt = sourceStack.getNbt();
+        if (stackNbt == null || !(stackNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt) || !(itemContainerNbt.get("Items") instanceof NbtList itemsNbt)) {
+            return true;
+        }
+
+        int size = this.getSize(itemContainerNbt);
+        DefaultedList<ItemStack> cachedContents = CONTENTS_CACHE.getIfPresent(itemsNbt);
+
+        if (cachedContents != null && cachedContents.size() == size) {
+
+            BagMetrics.CONTENTS_CACHE_HITS.increment();
+            for (ItemStack stack : cachedContents) {
+
+                if (!stack.isEmpty() && !visitor.test(stack)) {
+                    return false;
+                }
+
+            }
+
+            return true;
+
+        }
+
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            NbtCompound entryNbt = itemsNbt.getCompound(i);
+            if (BagNbtFormat.getSlot(entryNbt) >= size) {
+                continue;
+            }
+
+            ItemStack stack = ItemStack.fromNbt(entryNbt);
+            if (!stack.isEmpty() && !visitor.test(stack)) {
+                return false;
+            }
+
+        }
+
+        return true;
+
+    }
+
+    //  Returns the decoded contents shared with the cache. These must never be modified, and are only handed out of this class through
+    //  the read-only #getContentsView
+    private DefaultedList<ItemStack> getCachedContents(ItemStack sourceStack) {
+
+        //  Contents that are still being saved off-thread have to be committed first, otherwise the previous ones would be read
+        BagSavePipeline.complete(sourceStack);
+
+        NbtCompound itemContainerNbt = getItemContainerNbt(sourceStack);
+        int size = this.getSize(itemContainerNbt);
+
+        if (itemContainerNbt == null || !itemContainerNbt.contains("Items", NbtElement.LIST_TYPE)) {
+            return size == emptyContents.size()
+                ? emptyContents
+                : DefaultedList.ofSize(size, ItemStack.EMPTY);
+        }
+
+        NbtList itemsNbt = itemContainerNbt.getList("Items", NbtElement.COMPOUND_TYPE);
+        DefaultedList<ItemStack> contents = CONTENTS_CACHE.getIfPresent(itemsNbt);
+
+        if (contents != null && contents.size() == size) {
+            BagMetrics.CONTENTS_CACHE_HITS.increment();
+            return contents;
+        }
+
+        BagMetrics.CONTENTS_DECODES.increment();
+
+        //  Read the same way as Inventories#readNbt, except that the slots aren't limited to a byte
+        contents = DefaultedList.ofSize(size, ItemStack.EMPTY);
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            NbtCompound entryNbt = itemsNbt.getCompound(i);
+            int slot = BagNbtFormat.getSlot(entryNbt);
+
+            if (slot >= 0 && slot < size) {
+                contents.set(slot, ItemStack.fromNbt(entryNbt));
+            }
+
+        }
+
+        CONTENTS_CACHE.put(itemsNbt, contents);
+        return contents;
+
+    }
+
+    //  Binary searches the (sorted) entries of the "Items" list for the specified slot. Returns the index of the entry if found,
+    //  otherwise (-(insertion point) - 1), like Arrays#binarySearch
+    private static int findEntryIndex(NbtList itemsNbt, int slot) {
+
+        int low = 0;
+        int high = itemsNbt.size() - 1;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+            int middleSlot = BagNbtFormat.getSlot(itemsNbt.getCompound(middle));
+
+            if (middleSlot < slot) {
+                low = middle + 1;
+            }
+
+            else if (middleSlot > slot) {
+                high = middle - 1;
+            }
+
+            else {
+                return middle;
+            }
+
+        }
+
+        return -(low + 1);
+
+    }
+
+    //  Scans the (unsorted) entries of the "Items" list for the last entry of the specified slot, since that's the one that
+    //  Inventories#readNbt keeps. Returns -1 if there's none
+    private static int findLastEntryIndex(NbtList itemsNbt, int slot) {
+
+        for (int i = itemsNbt.size() - 1; i >= 0; i--) {
+
+            if (BagNbtFormat.getSlot(itemsNbt.getCompound(i)) == slot) {
+                return i;
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    private static boolean isSorted(NbtList itemsNbt) {
+
+        if (SORTED_ITEMS.getIfPresent(itemsNbt) != null) {
+            return true;
+        }
+
+        int previousSlot = -1;
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            int slot = BagNbtFormat.getSlot(itemsNbt.getCompound(i));
+            if (slot <= previousSlot) {
+                return false;
+            }
+
+            previousSlot = slot;
+
+        }
+
+        SORTED_ITEMS.put(itemsNbt, Boolean.TRUE);
+        return true;
+
+    }
+
+    //  Sorts the entries of the "Items" list by their slot index in place, keeping only the last entry of each slot like
+    //  Inventories#readNbt does. The list keeps its identity, so its cached contents (if any) stay valid, but the summary has to be
+    //  counted again, since the dropped entries were counted in it
+    private static void sortEntries(NbtCompound itemContainerNbt, NbtList itemsNbt) {
+
+        Int2ObjectSortedMap<NbtCompound> entries = new Int2ObjectAVLTreeMap<>();
+        for (int i = 0; i < itemsNbt.size(); i++) {
+            NbtCompound entryNbt = itemsNbt.getCompound(i);
+            entries.put(BagNbtFormat.getSlot(entryNbt), entryNbt);
+        }
+
+        itemsNbt.clear();
+        itemsNbt.addAll(entries.values());
+
+        itemContainerNbt.remove("Occupied");
+        itemContainerNbt.remove("ItemCount");
+
+        SORTED_ITEMS.put(itemsNbt, Boolean.TRUE);
+
     }
 
     @Override
     public BagState getState(ItemStack sourceStack) {
 
-        NbtCompound stackNbt;
-        if ((stackNbt = sourceStack.getNbt()) == null || !stackNbt.contains(SimpleImmersiveBags.ITEM_CONTAINER_ID)) {
+        NbtCompound stackNbt = sourceStack.getNbt();
+        if (stackNbt == null || !(stackNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt)) {
             return BagState.NONE;
         }
 
-        NbtCompound itemContainerNbt = stackNbt.getCompound(SimpleImmersiveBags.ITEM_CONTAINER_ID);
-        return BagState.CODEC
-            .decode(NbtOps.INSTANCE, itemContainerNbt.get("State"))
-            .result()
-            .map(Pair::getFirst)
-            .orElse(BagState.NONE);
+        //  Prefer the compact state ID, and only fall back to the state name for bags that were saved before it existed
+        return itemContainerNbt.get("StateId") instanceof NbtByte stateIdNbt
+            ? BagState.byId(stateIdNbt.byteValue())
+            : BagState.byName(itemContainerNbt.getString("State"));
 
     }
 
@@ -181,6 +871,9 @@ public class BagItem extends Item implements Equipment, BagContainer {
     public void setState(ItemStack sourceStack, BagState state) {
         NbtCompound itemContainerNbt = sourceStack.getOrCreateSubNbt(SimpleImmersiveBags.ITEM_CONTAINER_ID);
         itemContainerNbt.putString("State", state.asString());
+        itemContainerNbt.putByte("StateId", state.getId());
+
+        BagUtil.invalidateOpenedBags();
     }
 
     @Override
@@ -188,10 +881,23 @@ public class BagItem extends Item implements Equipment, BagContainer {
         return this.asBagInventory(stack);
     }
 
+    //  Bags that are currently opened are skipped, since their contents are overwritten once their inventory is saved
+    @Nullable
+    @SuppressWarnings("UnstableApiUsage")
+    public Storage<ItemVariant> findStorage(ItemStack stack, ContainerItemContext context) {
+
+        BagSavePipeline.complete(stack);
+
+        return stack.isOf(this) && this.getState(stack) != BagState.OPENED
+            ? new BagStorage(this, context)
+            : null;
+
+    }
+
     @Override
     public BagInventory asBagInventory(ItemStack stack) {
         return stack.isOf(this)
-            ? new BagInventory(stack, screenTextureId, initialRows, initialColumns)
+            ? new BagInventory(stack, screenTextureId, this.getRows(stack), this.getColumns(stack))
             : BagInventory.EMPTY;
     }
 
@@ -222,15 +928,17 @@ public class BagItem extends Item implements Equipment, BagContainer {
             return;
         }
 
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(bagStack, null);
+        BagContainer bagContainer = BagUtil.findContainer(bagStack);
         if (bagContainer == null || bagContainer.getState(bagStack) == BagState.CLOSED) {
             return;
         }
 
+        BagMetrics.HANDLER_OPENS.increment();
+
         if (player.currentScreenHandler instanceof BagScreenHandler prevBagScreenHandler) {
 
             ItemStack prevBagStack = prevBagScreenHandler.getSourceStack();
-            BagContainer prevBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(prevBagStack, null);
+            BagContainer prevBagContainer = BagUtil.findContainer(prevBagStack);
 
             if (prevBagContainer != null) {
                 prevBagScreenHandler.getBagInventory().onClose(player);
@@ -260,12 +968,14 @@ public class BagItem extends Item implements Equipment, BagContainer {
         }
 
         ItemStack bagStack = bagScreenHandler.getSourceStack();
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(bagStack, null);
+        BagContainer bagContainer = BagUtil.findContainer(bagStack);
 
         if (bagContainer != null && bagContainer.getState(bagStack) == BagState.OPENED) {
             return;
         }
 
+        BagMetrics.HANDLER_CLOSES.increment();
+
         ItemStack prevCursorStack = player.currentScreenHandler.getCursorStack().copy();
         serverPlayer.currentScreenHandler.setCursorStack(ItemStack.EMPTY);
 
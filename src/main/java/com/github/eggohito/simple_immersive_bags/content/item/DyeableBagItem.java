@@ -20,14 +20,17 @@ public class DyeableBagItem extends BagItem implements DyeableItem {
         CauldronBehavior.WATER_CAULDRON_BEHAVIOR.map().put(this, CauldronBehavior.CLEAN_DYEABLE_ITEM);
     }
 
-    public static float[] unpackRgb(ItemStack stack) {
+    //  Returns the color of the bag stack packed as 0xRRGGBB, or white if the bag can't be dyed
+    public static int getTint(ItemStack stack) {
+        return stack.getItem() instanceof DyeableBagItem dyeableBagItem
+            ? dyeableBagItem.getColor(stack)
+            : 0xFFFFFF;
+    }
 
-        float[] rgb = new float[] {1.0f, 1.0f, 1.0f};
-        if (!(stack.getItem() instanceof DyeableBagItem dyeableBagItem)) {
-            return rgb;
-        }
+    public static float[] unpackRgb(ItemStack stack) {
 
-        int i = dyeableBagItem.getColor(stack);
+        float[] rgb = new float[3];
+        int i = getTint(stack);
 
         rgb[0] = (float) (i >> 16 & 255) / 255.0f;
         rgb[1] = (float) (i >> 8 & 255) / 255.0f;
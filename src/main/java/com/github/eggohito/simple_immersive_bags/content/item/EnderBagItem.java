@@ -4,12 +4,16 @@ import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
 import com.github.eggohito.simple_immersive_bags.inventory.DelegatedBagInventory;
 import com.github.eggohito.simple_immersive_bags.inventory.DelegatedGridInventory;
 import com.github.eggohito.simple_immersive_bags.inventory.GridInventory;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.Storage;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.sound.SoundEvent;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
 @SuppressWarnings("unused")
 public class EnderBagItem extends BagItem {
@@ -34,4 +38,12 @@ public class EnderBagItem extends BagItem {
 
     }
 
+    //  The contents of ender bags are the ender chest of whoever holds them, which the context of the stack doesn't know about
+    @Nullable
+    @Override
+    @SuppressWarnings("UnstableApiUsage")
+    public Storage<ItemVariant> findStorage(ItemStack stack, ContainerItemContext context) {
+        return null;
+    }
+
 }
@@ -0,0 +1,7 @@
+package com.github.eggohito.simple_immersive_bags.duck;
+
+import com.github.eggohito.simple_immersive_bags.util.OpenedBagCache;
+
+public interface EntityOpenedBagCache {
+    OpenedBagCache sib$getOpenedBagCache();
+}
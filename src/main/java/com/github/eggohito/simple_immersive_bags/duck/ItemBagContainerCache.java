@@ -0,0 +1,12 @@
+package com.github.eggohito.simple_immersive_bags.duck;
+
+import com.github.eggohito.simple_immersive_bags.util.BagContainerResolution;
+import org.jetbrains.annotations.Nullable;
+
+public interface ItemBagContainerCache {
+
+    @Nullable
+    BagContainerResolution sib$getBagContainerResolution();
+    void sib$setBagContainerResolution(BagContainerResolution resolution);
+
+}
@@ -0,0 +1,6 @@
+package com.github.eggohito.simple_immersive_bags.duck;
+
+public interface ItemStackPendingSave {
+    boolean sib$isSavePending();
+    void sib$setSavePending(boolean savePending);
+}
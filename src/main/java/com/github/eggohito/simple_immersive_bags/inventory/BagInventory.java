@@ -3,12 +3,19 @@ package com.github.eggohito.simple_immersive_bags.inventory;
 import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
 import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import net.fabricmc.fabric.api.screenhandler.v1.ExtendedScreenHandlerFactory;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.Inventories;
+import net.minecraft.item.DyeableItem;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.recipe.RecipeMatcher;
+import net.minecraft.registry.Registries;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
@@ -16,6 +23,9 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.DefaultedList;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
+import java.util.List;
+
 @SuppressWarnings("unused")
 public class BagInventory extends GridInventory implements ExtendedScreenHandlerFactory {
 
@@ -33,14 +43,24 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
 
     };
 
+    //  Whether the contents are decoded from the bag stack one slot at a time, as they're accessed, instead of all at once when the
+    //  inventory is opened
+    private static final boolean LAZY_LOAD = !Boolean.getBoolean("simple-immersive-bags.eagerInventoryLoad");
+
     private final Identifier screenTextureId;
     private final ItemStack sourceStack;
 
     private final boolean load;
     private final boolean save;
 
+    private final BitSet dirtySlots = new BitSet();
+    private final BitSet unloadedSlots = new BitSet();
+
     private boolean dirty;
 
+    @Nullable
+    private BagSlotIndex slotIndex;
+
     public BagInventory(ItemStack sourceStack, Identifier screenTextureId, boolean shouldSave, boolean shouldLoad, int rows, int columns) {
         super(rows, columns);
         this.screenTextureId = screenTextureId;
@@ -98,7 +118,123 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
 
     @Override
     public void markDirty() {
+
+        this.dirty = true;
+        this.dirtySlots.set(0, this.size());
+
+        if (slotIndex != null) {
+            slotIndex.invalidate();
+        }
+
+    }
+
+    public void markDirty(int slot) {
+
         this.dirty = true;
+        this.dirtySlots.set(slot);
+
+        if (slotIndex != null) {
+            slotIndex.onSlotChanged(slot);
+        }
+
+    }
+
+    //  Slots that haven't been loaded yet are decoded from the bag stack first. Any other access to the held stacks (e.g. through
+    //  #getHeldStacks) loads the remaining slots all at once
+    @Override
+    public ItemStack getStack(int slot) {
+        this.loadSlot(slot);
+        return super.getStack(slot);
+    }
+
+    //  Only the specified slot is changed here, so mark that slot as dirty instead of the whole inventory. The previous stack is
+    //  replaced, so there's no need to load it
+    @Override
+    public void setStack(int slot, ItemStack stack) {
+
+        this.unloadedSlots.clear(slot);
+        super.getHeldStacks().set(slot, stack);
+        if (!stack.isEmpty() && stack.getCount() > this.getMaxCountPerStack()) {
+            stack.setCount(this.getMaxCountPerStack());
+        }
+
+        this.markDirty(slot);
+
+    }
+
+    @Override
+    public ItemStack removeStack(int slot, int amount) {
+
+        this.loadSlot(slot);
+
+        ItemStack removedStack = Inventories.splitStack(super.getHeldStacks(), slot, amount);
+        if (!removedStack.isEmpty()) {
+            this.markDirty(slot);
+        }
+
+        return removedStack;
+
+    }
+
+    @Override
+    public ItemStack removeStack(int slot) {
+
+        this.loadSlot(slot);
+
+        ItemStack removedStack = super.getHeldStacks().get(slot);
+        if (removedStack.isEmpty()) {
+            return ItemStack.EMPTY;
+        }
+
+        super.getHeldStacks().set(slot, ItemStack.EMPTY);
+        this.markDirty(slot);
+
+        return removedStack;
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        this.loadAll();
+        return super.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        this.unloadedSlots.clear();
+        super.clear();
+    }
+
+    @Override
+    public DefaultedList<ItemStack> getHeldStacks() {
+        this.loadAll();
+        return super.getHeldStacks();
+    }
+
+    //  The methods of SimpleInventory below read the held stacks directly, which would skip the slots that haven't been loaded yet (or
+    //  in the case of #clearToList, lose them), so the remaining slots are loaded first
+    @Override
+    public List<ItemStack> clearToList() {
+        this.loadAll();
+        return super.clearToList();
+    }
+
+    @Override
+    public boolean canInsert(ItemStack stack) {
+        this.loadAll();
+        return super.canInsert(stack);
+    }
+
+    @Override
+    public void provideRecipeInputs(RecipeMatcher finder) {
+        this.loadAll();
+        super.provideRecipeInputs(finder);
+    }
+
+    @Override
+    public String toString() {
+        this.loadAll();
+        return super.toString();
     }
 
     public Identifier getScreenTextureId() {
@@ -121,17 +257,42 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
         return dirty;
     }
 
+    //  The index is only kept up to date through #markDirty, so inventories that can be modified elsewhere shouldn't provide one
+    @Nullable
+    public BagSlotIndex getSlotIndex() {
+
+        if (slotIndex == null) {
+            this.slotIndex = new BagSlotIndex(this);
+        }
+
+        return slotIndex;
+
+    }
+
+    //  Only the parts of the bag stack that the client needs to display the screen are sent, since its contents are already synced
+    //  through the slots of the screen handler
     public void send(PacketByteBuf buf) {
 
-        if (SimpleImmersiveBags.ITEM_CONTAINER.find(this.getSourceStack(), null) == null) {
+        if (BagUtil.findContainer(this.getSourceStack()) == null) {
             buf.writeBoolean(true);
             return;
         }
 
         buf.writeBoolean(false);
-
         buf.writeIdentifier(this.getScreenTextureId());
-        buf.writeItemStack(this.getSourceStack());
+
+        ItemStack sourceStack = this.getSourceStack();
+        buf.writeRegistryValue(Registries.ITEM, sourceStack.getItem());
+
+        buf.writeNullable(sourceStack.hasCustomName() ? sourceStack.getName() : null, PacketByteBuf::writeText);
+        if (sourceStack.getItem() instanceof DyeableItem dyeableItem && dyeableItem.hasColor(sourceStack)) {
+            buf.writeBoolean(true);
+            buf.writeInt(dyeableItem.getColor(sourceStack));
+        }
+
+        else {
+            buf.writeBoolean(false);
+        }
 
         buf.writeVarInt(this.getRows());
         buf.writeVarInt(this.getColumns());
@@ -148,7 +309,27 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
         }
 
         Identifier screenTextureId = buf.readIdentifier();
-        ItemStack sourceStack = buf.readItemStack();
+
+        //  Rebuild a stand-in of the bag stack from its display components
+        Item item = buf.readRegistryValue(Registries.ITEM);
+        ItemStack sourceStack = item != null
+            ? new ItemStack(item)
+            : ItemStack.EMPTY;
+
+        Text customName = buf.readNullable(PacketByteBuf::readText);
+        if (customName != null && !sourceStack.isEmpty()) {
+            sourceStack.setCustomName(customName);
+        }
+
+        if (buf.readBoolean()) {
+
+            int color = buf.readInt();
+
+            if (sourceStack.getItem() instanceof DyeableItem dyeableItem) {
+                dyeableItem.setColor(sourceStack, color);
+            }
+
+        }
 
         int rows = buf.readVarInt();
         int columns = buf.readVarInt();
@@ -162,7 +343,7 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
 
     public void load() {
 
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(sourceStack, null);
+        BagContainer bagContainer = BagUtil.findContainer(sourceStack);
         if (bagContainer == null) {
             SimpleImmersiveBags.LOGGER.error("Tried loading the bag inventory contents of item {}, which isn't a bag item!", sourceStack);
             return;
@@ -173,16 +354,97 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
             return;
         }
 
-        DefaultedList<ItemStack> contents = bagContainer.getContents(sourceStack);
-        for (int i = 0; i < this.size(); i++) {
-            this.getHeldStacks().set(i, contents.get(i));
+        long startTime = BagMetrics.startTimer();
+
+        //  Only bag items can decode a single slot without decoding the rest of the contents
+        if (LAZY_LOAD && bagContainer instanceof BagItem) {
+            this.unloadedSlots.set(0, this.size());
+        }
+
+        else {
+
+            List<ItemStack> contents = getContents(bagContainer, sourceStack);
+            for (int i = 0; i < this.size(); i++) {
+                super.getHeldStacks().set(i, i < contents.size() ? contents.get(i).copy() : ItemStack.EMPTY);
+            }
+
+            this.unloadedSlots.clear();
+
+        }
+
+        this.dirtySlots.clear();
+        if (slotIndex != null) {
+            slotIndex.invalidate();
+        }
+
+        BagMetrics.stopTimer(BagMetrics.INVENTORY_LOADS, startTime);
+
+    }
+
+    private void loadSlot(int slot) {
+
+        if (slot < 0 || !unloadedSlots.get(slot)) {
+            return;
+        }
+
+        this.unloadedSlots.clear(slot);
+        if (BagUtil.findContainer(sourceStack) instanceof BagItem bagItem) {
+            super.getHeldStacks().set(slot, bagItem.getStack(sourceStack, slot));
+        }
+
+    }
+
+    //  Loads the remaining slots from the (cached) decoded contents of the bag stack, rather than decoding each of them on its own
+    private void loadAll() {
+
+        if (unloadedSlots.isEmpty()) {
+            return;
+        }
+
+        BagContainer bagContainer = BagUtil.findContainer(sourceStack);
+        List<ItemStack> contents = bagContainer != null
+            ? getContents(bagContainer, sourceStack)
+            : List.of();
+
+        for (int slot = unloadedSlots.nextSetBit(0); slot >= 0; slot = unloadedSlots.nextSetBit(slot + 1)) {
+            super.getHeldStacks().set(slot, slot < contents.size() ? contents.get(slot).copy() : ItemStack.EMPTY);
+        }
+
+        this.unloadedSlots.clear();
+
+    }
+
+    //  The returned stacks must be copied before they're held. Bag items hand out the stacks shared with their cache, so that only the
+    //  slots that are actually loaded get copied, instead of copying the whole bag through #getContents first
+    private static List<ItemStack> getContents(BagContainer bagContainer, ItemStack sourceStack) {
+        return bagContainer instanceof BagItem bagItem
+            ? bagItem.getContentsView(sourceStack)
+            : bagContainer.getContents(sourceStack);
+    }
+
+    //  Dirty slots have been loaded already, since they had to be accessed to be changed, unless the whole inventory was marked as
+    //  dirty. Only the latter has to load the remaining slots before saving
+    private DefaultedList<ItemStack> getStacksToSave() {
+        return dirtySlots.intersects(unloadedSlots)
+            ? this.getHeldStacks()
+            : super.getHeldStacks();
+    }
+
+    //  Saves the contents through the save pipeline, which encodes them off the server thread. The held stacks must not be modified
+    //  until the save is committed, e.g. because the screen handler of the bag has been closed. Falls back to a synchronous save
+    //  later on (through #onClose) if the save couldn't be submitted
+    public void saveDeferred() {
+
+        if (dirty && save && BagUtil.findContainer(sourceStack) instanceof BagItem bagItem && BagSavePipeline.submit(bagItem, sourceStack, this.getStacksToSave(), dirtySlots)) {
+            this.dirtySlots.clear();
+            this.dirty = false;
         }
 
     }
 
     public void save() {
 
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(sourceStack, null);
+        BagContainer bagContainer = BagUtil.findContainer(sourceStack);
         if (bagContainer == null) {
             SimpleImmersiveBags.LOGGER.warn("Tried saving the bag inventory contents of item {}, which isn't a bag item!", sourceStack);
             return;
@@ -193,9 +455,14 @@ public class BagInventory extends GridInventory implements ExtendedScreenHandler
             return;
         }
 
-        bagContainer.setContents(sourceStack, this.getHeldStacks());
+        long startTime = BagMetrics.startTimer();
+        bagContainer.setContents(sourceStack, this.getStacksToSave(), dirtySlots);
+
+        this.dirtySlots.clear();
         this.dirty = false;
 
+        BagMetrics.stopTimer(BagMetrics.INVENTORY_SAVES, startTime);
+
     }
 
 }
@@ -0,0 +1,204 @@
+package com.github.eggohito.simple_immersive_bags.inventory;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.duck.ItemStackPendingSave;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.collection.DefaultedList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//  Encodes the contents of bags in a bounded pool of worker threads, and commits the encoded entries back to their bag stacks on the
+//  server thread. Saves are committed at the end of the server tick, or as soon as the bag stack is read, written, copied or
+//  serialized on the server thread, whichever comes first. Other threads never commit saves, and read the previous contents of the
+//  bag stack until then
+public class BagSavePipeline {
+
+    //  The amount of worker threads. A value of 0 or less disables the pipeline, which makes every save synchronous
+    private static final int WORKER_COUNT = Integer.getInteger("simple-immersive-bags.saveWorkers", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final AtomicInteger WORKER_ID = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = WORKER_COUNT > 0
+        ? createExecutor()
+        : null;
+
+    //  Keyed by the identity of the bag stacks, and only accessed from the server thread, which is the only thread that submits and
+    //  commits saves. The bag stacks are flagged as well, so that checking a stack doesn't have to look it up here
+    private static final Map<ItemStack, PendingSave> PENDING = new IdentityHashMap<>();
+
+    @Nullable
+    private static volatile MinecraftServer server;
+
+    private static ExecutorService createExecutor() {
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), Worker::new);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+
+    }
+
+    //  Submits the changed slots of the specified contents to be encoded off-thread. The stacks are snapshotted by reference, so they
+    //  must not be modified until the save is committed. Returns false if the save couldn't be submitted, in which case the caller has
+    //  to save synchronously instead
+    public static boolean submit(BagItem bagItem, ItemStack sourceStack, DefaultedList<ItemStack> contents, BitSet changedSlots) {
+
+        if (EXECUTOR == null || !isOnServerThread()) {
+            return false;
+        }
+
+        //  Saves of the same stack have to be applied in the order they were made
+        complete(sourceStack);
+
+        int[] slots = changedSlots.stream()
+            .filter(slot -> slot < contents.size())
+            .toArray();
+
+        ItemStack[] stacks = new ItemStack[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            stacks[i] = contents.get(slots[i]);
+        }
+
+        CompletableFuture<NbtCompound[]> entries;
+        try {
+            entries = CompletableFuture.supplyAsync(() -> encode(slots, stacks), EXECUTOR);
+        }
+
+        catch (RejectedExecutionException e) {
+            BagMetrics.DEFERRED_SAVE_FALLBACKS.increment();
+            return false;
+        }
+
+        PENDING.put(sourceStack, new PendingSave(bagItem, sourceStack, slots, stacks, entries));
+        ((ItemStackPendingSave) (Object) sourceStack).sib$setSavePending(true);
+
+        BagMetrics.DEFERRED_SAVES.increment();
+        return true;
+
+    }
+
+    //  Commits the pending save of the specified bag stack (if any), waiting for it to be encoded if it hasn't been yet. Does nothing
+    //  off the server thread
+    public static void complete(ItemStack sourceStack) {
+
+        if (!((ItemStackPendingSave) (Object) sourceStack).sib$isSavePending() || !isOnServerThread()) {
+            return;
+        }
+
+        PendingSave pendingSave = PENDING.remove(sourceStack);
+        if (pendingSave != null) {
+            pendingSave.commit();
+        }
+
+    }
+
+    public static void completeAll() {
+
+        if (PENDING.isEmpty() || !isOnServerThread()) {
+            return;
+        }
+
+        List<PendingSave> pendingSaves = new ArrayList<>(PENDING.values());
+        PENDING.clear();
+
+        pendingSaves.forEach(PendingSave::commit);
+
+    }
+
+    //  Only commits the saves that are done encoding, so the server thread never waits for a worker here. The rest are committed on
+    //  a later tick
+    public static void onServerTick(MinecraftServer server) {
+
+        if (PENDING.isEmpty()) {
+            return;
+        }
+
+        List<PendingSave> pendingSaves = new ArrayList<>();
+        Iterator<PendingSave> iterator = PENDING.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            PendingSave pendingSave = iterator.next();
+            if (pendingSave.entries().isDone()) {
+                pendingSaves.add(pendingSave);
+                iterator.remove();
+            }
+
+        }
+
+        pendingSaves.forEach(PendingSave::commit);
+
+    }
+
+    public static void onServerStarting(MinecraftServer server) {
+        BagSavePipeline.server = server;
+    }
+
+    public static void onServerStopping(MinecraftServer server) {
+        completeAll();
+    }
+
+    public static void onServerStopped(MinecraftServer server) {
+        BagSavePipeline.server = null;
+    }
+
+    private static boolean isOnServerThread() {
+        MinecraftServer currentServer = server;
+        return currentServer != null
+            && currentServer.isOnThread();
+    }
+
+    private static NbtCompound[] encode(int[] slots, ItemStack[] stacks) {
+
+        NbtCompound[] entries = new NbtCompound[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            entries[i] = BagItem.encodeEntry(slots[i], stacks[i]);
+        }
+
+        return entries;
+
+    }
+
+    private record PendingSave(BagItem bagItem, ItemStack sourceStack, int[] slots, ItemStack[] stacks, CompletableFuture<NbtCompound[]> entries) {
+
+        private void commit() {
+
+            ((ItemStackPendingSave) (Object) sourceStack).sib$setSavePending(false);
+
+            if (!entries.isDone()) {
+                BagMetrics.DEFERRED_SAVE_WAITS.increment();
+            }
+
+            NbtCompound[] encodedEntries;
+            try {
+                encodedEntries = entries.join();
+            }
+
+            catch (CompletionException e) {
+                SimpleImmersiveBags.LOGGER.error("Failed encoding the contents of bag item {} off-thread! Encoding them on the server thread instead...", sourceStack, e);
+                encodedEntries = encode(slots, stacks);
+            }
+
+            bagItem.applyEntries(sourceStack, slots, stacks, encodedEntries);
+
+        }
+
+    }
+
+    private static final class Worker extends Thread {
+
+        private Worker(Runnable runnable) {
+            super(runnable, "Bag Save Worker #" + WORKER_ID.incrementAndGet());
+            this.setDaemon(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.github.eggohito.simple_immersive_bags.inventory;
+
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//  Tracks the empty slots and the partially filled stacks (keyed by their item) of a bag inventory, so that inserting a stack into
+//  it doesn't have to scan every slot. The slots are kept sorted, so stacks are still inserted into the lowest fitting slot
+public class BagSlotIndex {
+
+    private final BagInventory inventory;
+
+    private final BitSet emptySlots;
+    private final Map<Item, IntSortedSet> partialSlots = new IdentityHashMap<>();
+
+    //  The item each slot is indexed under in #partialSlots, if any
+    private final Item[] indexedItems;
+    private boolean valid;
+
+    public BagSlotIndex(BagInventory inventory) {
+        this.inventory = inventory;
+        this.emptySlots = new BitSet(inventory.size());
+        this.indexedItems = new Item[inventory.size()];
+    }
+
+    public void invalidate() {
+        this.valid = false;
+    }
+
+    public void onSlotChanged(int slot) {
+
+        //  The whole index is rebuilt on the next query anyway
+        if (!valid || slot < 0 || slot >= indexedItems.length) {
+            return;
+        }
+
+        Item indexedItem = indexedItems[slot];
+        if (indexedItem != null) {
+
+            IntSortedSet slots = partialSlots.get(indexedItem);
+            if (slots != null && slots.remove(slot) && slots.isEmpty()) {
+                partialSlots.remove(indexedItem);
+            }
+
+            indexedItems[slot] = null;
+
+        }
+
+        ItemStack stack = inventory.getStack(slot);
+        emptySlots.set(slot, stack.isEmpty());
+
+        if (!stack.isEmpty() && stack.getCount() < this.getMaxCount(stack)) {
+            partialSlots.computeIfAbsent(stack.getItem(), item -> new IntAVLTreeSet()).add(slot);
+            indexedItems[slot] = stack.getItem();
+        }
+
+    }
+
+    //  Returns the lowest slot with a stack that the specified stack can be merged into, or -1 if there's none
+    public int findMergeableSlot(ItemStack stack) {
+
+        this.ensureValid();
+
+        IntSortedSet slots = partialSlots.get(stack.getItem());
+        if (slots == null) {
+            return -1;
+        }
+
+        for (IntIterator iterator = slots.iterator(); iterator.hasNext(); ) {
+
+            int slot = iterator.nextInt();
+            ItemStack stackInSlot = inventory.getStack(slot);
+
+            if (ItemStack.canCombine(stack, stackInSlot) && stackInSlot.getCount() < this.getMaxCount(stackInSlot)) {
+                return slot;
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    //  Returns the lowest empty slot from the specified slot onwards, or -1 if there's none
+    public int findEmptySlot(int fromSlot) {
+
+        this.ensureValid();
+
+        int slot = emptySlots.nextSetBit(fromSlot);
+        return slot < indexedItems.length
+            ? slot
+            : -1;
+
+    }
+
+    private void ensureValid() {
+
+        if (valid) {
+            return;
+        }
+
+        emptySlots.clear();
+        partialSlots.clear();
+
+        this.valid = true;
+        for (int slot = 0; slot < indexedItems.length; slot++) {
+            indexedItems[slot] = null;
+            this.onSlotChanged(slot);
+        }
+
+    }
+
+    private int getMaxCount(ItemStack stack) {
+        return Math.min(stack.getMaxCount(), inventory.getMaxCountPerStack());
+    }
+
+}
@@ -9,6 +9,7 @@ import net.minecraft.nbt.NbtList;
 import net.minecraft.recipe.RecipeMatcher;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.DefaultedList;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -38,6 +39,18 @@ public class DelegatedBagInventory extends BagInventory {
         delegate.markDirty();
     }
 
+    @Override
+    public void markDirty(int slot) {
+        delegate.markDirty();
+    }
+
+    //  The delegate can be modified without going through this inventory, e.g. by an ender chest, which would leave the index stale
+    @Nullable
+    @Override
+    public BagSlotIndex getSlotIndex() {
+        return null;
+    }
+
     @Override
     public void load() {
 
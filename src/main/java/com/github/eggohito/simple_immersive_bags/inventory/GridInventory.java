@@ -1,7 +1,17 @@
 package com.github.eggohito.simple_immersive_bags.inventory;
 
+import com.github.eggohito.simple_immersive_bags.util.BagSortKey;
 import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.collection.DefaultedList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @SuppressWarnings("unused")
 public class GridInventory extends SimpleInventory {
@@ -30,4 +40,63 @@ public class GridInventory extends SimpleInventory {
         return columns;
     }
 
+    //  Merges the partial stacks of the inventory and moves them to the front, ordered by the specified key. Stacks are merged before
+    //  being sorted, since keys like the count would otherwise keep mergeable stacks apart
+    public void sort(BagSortKey sortKey) {
+
+        DefaultedList<ItemStack> heldStacks = this.getHeldStacks();
+        List<ItemStack> mergedStacks = new ArrayList<>(heldStacks.size());
+
+        //  Every stack but the last one of each item (and NBT) is full, so only that one has to be kept around to be merged into
+        Map<MergeKey, ItemStack> partialStacks = new HashMap<>();
+
+        for (ItemStack stack : heldStacks) {
+
+            if (stack.isEmpty()) {
+                continue;
+            }
+
+            MergeKey mergeKey = new MergeKey(stack.getItem(), stack.getNbt());
+            ItemStack partialStack = partialStacks.get(mergeKey);
+
+            if (partialStack != null) {
+
+                int count = Math.min(stack.getCount(), this.getMaxCountInSlot(partialStack) - partialStack.getCount());
+
+                partialStack.increment(count);
+                stack.decrement(count);
+
+            }
+
+            if (!stack.isEmpty()) {
+                mergedStacks.add(stack);
+                partialStacks.put(mergeKey, stack);
+            }
+
+        }
+
+        sortKey.sort(mergedStacks);
+
+        int slot = 0;
+        for (ItemStack stack : mergedStacks) {
+            heldStacks.set(slot++, stack);
+        }
+
+        while (slot < heldStacks.size()) {
+            heldStacks.set(slot++, ItemStack.EMPTY);
+        }
+
+        this.markDirty();
+
+    }
+
+    private int getMaxCountInSlot(ItemStack stack) {
+        return Math.min(stack.getMaxCount(), this.getMaxCountPerStack());
+    }
+
+    //  Stacks can be merged if they have the same item and NBT, same as ItemStack#canCombine
+    private record MergeKey(Item item, @Nullable NbtCompound nbt) {
+
+    }
+
 }
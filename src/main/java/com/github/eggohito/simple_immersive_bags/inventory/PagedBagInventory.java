@@ -0,0 +1,175 @@
+package com.github.eggohito.simple_immersive_bags.inventory;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.recipe.RecipeMatcher;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//  A view of a fixed amount of rows of a larger bag inventory, starting from a row that can be scrolled. The slots of the bag's screen
+//  handler only refer to this view, so the amount of slots (and the slots to sync) stays the same no matter how large the bag is
+public class PagedBagInventory extends BagInventory {
+
+    private final BagInventory delegate;
+    private int firstRow;
+
+    public PagedBagInventory(BagInventory inventory, int visibleRows) {
+        super(inventory.getSourceStack(), inventory.getScreenTextureId(), false, false, Math.min(visibleRows, inventory.getRows()), inventory.getColumns());
+        this.delegate = inventory;
+    }
+
+    public BagInventory getDelegate() {
+        return delegate;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getMaxFirstRow() {
+        return delegate.getRows() - this.getRows();
+    }
+
+    public void setFirstRow(int firstRow) {
+        this.firstRow = MathHelper.clamp(firstRow, 0, this.getMaxFirstRow());
+    }
+
+    public int toDelegateSlot(int slot) {
+        return firstRow * this.getColumns() + slot;
+    }
+
+    @Override
+    public void onOpen(PlayerEntity player) {
+
+    }
+
+    @Override
+    public void onClose(PlayerEntity player) {
+
+    }
+
+    @Override
+    public void markDirty() {
+        delegate.markDirty();
+    }
+
+    @Override
+    public void markDirty(int slot) {
+        delegate.markDirty(this.toDelegateSlot(slot));
+    }
+
+    @Override
+    public void load() {
+
+    }
+
+    @Override
+    public void save() {
+
+    }
+
+    @Nullable
+    @Override
+    public BagSlotIndex getSlotIndex() {
+        return null;
+    }
+
+    @Override
+    public ItemStack getStack(int slot) {
+        return delegate.getStack(this.toDelegateSlot(slot));
+    }
+
+    @Override
+    public void setStack(int slot, ItemStack stack) {
+        delegate.setStack(this.toDelegateSlot(slot), stack);
+    }
+
+    @Override
+    public ItemStack removeStack(int slot, int amount) {
+        return delegate.removeStack(this.toDelegateSlot(slot), amount);
+    }
+
+    @Override
+    public ItemStack removeStack(int slot) {
+        return delegate.removeStack(this.toDelegateSlot(slot));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    //  The methods below would otherwise go through the (unused) held stacks of this view, so they go through the visible slots of the
+    //  delegate instead
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < this.size(); slot++) {
+            this.setStack(slot, ItemStack.EMPTY);
+        }
+    }
+
+    @Override
+    public List<ItemStack> clearToList() {
+
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int slot = 0; slot < this.size(); slot++) {
+
+            ItemStack stack = this.getStack(slot);
+            if (!stack.isEmpty()) {
+                stacks.add(stack);
+            }
+
+        }
+
+        this.clear();
+        return stacks;
+
+    }
+
+    @Override
+    public boolean canInsert(ItemStack stack) {
+
+        for (int slot = 0; slot < this.size(); slot++) {
+
+            ItemStack stackInSlot = this.getStack(slot);
+            if (stackInSlot.isEmpty() || ItemStack.canCombine(stackInSlot, stack) && stackInSlot.getCount() < stackInSlot.getMaxCount()) {
+                return true;
+            }
+
+        }
+
+        return false;
+
+    }
+
+    @Override
+    public void provideRecipeInputs(RecipeMatcher finder) {
+        for (int slot = 0; slot < this.size(); slot++) {
+            finder.addInput(this.getStack(slot));
+        }
+    }
+
+    @Override
+    public boolean canPlayerUse(PlayerEntity player) {
+        return delegate.canPlayerUse(player);
+    }
+
+    @Override
+    public int getMaxCountPerStack() {
+        return delegate.getMaxCountPerStack();
+    }
+
+    @Override
+    public boolean isValid(int slot, ItemStack stack) {
+        return delegate.isValid(this.toDelegateSlot(slot), stack);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.github.eggohito.simple_immersive_bags.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class BagCounter implements BagMetric {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    public BagCounter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String describe() {
+        return Long.toString(this.get());
+    }
+
+    @Override
+    public void reset() {
+        value.reset();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.github.eggohito.simple_immersive_bags.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//  A lock-free histogram with power-of-two buckets, where bucket N holds the values within [2^(N - 1), 2^N). Percentiles are
+//  approximated by the upper bound of the bucket they fall in
+public class BagHistogram implements BagMetric {
+
+    private final String name;
+    private final Unit unit;
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public BagHistogram(String name, Unit unit) {
+
+        this.name = name;
+        this.unit = unit;
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+
+    }
+
+    public void record(long value) {
+
+        long clampedValue = Math.max(value, 0L);
+
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(clampedValue)].increment();
+        count.increment();
+        sum.add(clampedValue);
+        max.accumulateAndGet(clampedValue, Math::max);
+
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long count = this.getCount();
+        return count > 0
+            ? (double) sum.sum() / count
+            : 0.0D;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getPercentile(double percentile) {
+
+        long count = this.getCount();
+        if (count == 0) {
+            return 0L;
+        }
+
+        long target = (long) Math.ceil(count * percentile);
+        long seen = 0L;
+
+        for (int i = 0; i < buckets.length; i++) {
+
+            seen += buckets[i].sum();
+
+            if (seen >= target) {
+                return i == 0 ? 0L : Math.min((1L << i) - 1, this.getMax());
+            }
+
+        }
+
+        return this.getMax();
+
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("count=%d, mean=%s, p50=%s, p99=%s, max=%s", this.getCount(), unit.format(this.getMean()), unit.format(this.getPercentile(0.5D)), unit.format(this.getPercentile(0.99D)), unit.format(this.getMax()));
+    }
+
+    @Override
+    public void reset() {
+
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+
+        count.reset();
+        sum.reset();
+        max.set(0L);
+
+    }
+
+    public enum Unit {
+
+        NANOSECONDS {
+            @Override
+            public String format(double value) {
+                return String.format("%.1fµs", value / 1000.0D);
+            }
+        },
+
+        BYTES {
+            @Override
+            public String format(double value) {
+                return String.format("%.0fB", value);
+            }
+        };
+
+        public abstract String format(double value);
+
+    }
+
+}
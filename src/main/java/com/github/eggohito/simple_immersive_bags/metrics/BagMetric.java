@@ -0,0 +1,11 @@
+package com.github.eggohito.simple_immersive_bags.metrics;
+
+public interface BagMetric {
+
+    String getName();
+
+    String describe();
+
+    void reset();
+
+}
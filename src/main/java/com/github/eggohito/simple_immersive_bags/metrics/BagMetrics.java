@@ -0,0 +1,94 @@
+package com.github.eggohito.simple_immersive_bags.metrics;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class BagMetrics {
+
+    private static final List<BagMetric> METRICS = new ArrayList<>();
+
+    public static final BagHistogram INVENTORY_LOADS = register(new BagHistogram("inventory_loads", BagHistogram.Unit.NANOSECONDS));
+    public static final BagHistogram INVENTORY_SAVES = register(new BagHistogram("inventory_saves", BagHistogram.Unit.NANOSECONDS));
+    public static final BagHistogram CONTENTS_BYTES_WRITTEN = register(new BagHistogram("contents_bytes_written", BagHistogram.Unit.BYTES));
+
+    public static final BagCounter CONTENTS_DECODES = register(new BagCounter("contents_decodes"));
+    public static final BagCounter CONTENTS_CACHE_HITS = register(new BagCounter("contents_cache_hits"));
+    public static final BagCounter CONTENTS_COMPACTIONS = register(new BagCounter("contents_compactions"));
+
+    public static final BagCounter HANDLER_OPENS = register(new BagCounter("handler_opens"));
+    public static final BagCounter HANDLER_CLOSES = register(new BagCounter("handler_closes"));
+
+    public static final BagCounter SAVES_ON_PICKUP = register(new BagCounter("saves_on_pickup"));
+    public static final BagCounter SAVES_ON_QUICK_MOVE = register(new BagCounter("saves_on_quick_move"));
+    public static final BagCounter SAVES_ON_SWAP = register(new BagCounter("saves_on_swap"));
+    public static final BagCounter SAVES_ON_THROW = register(new BagCounter("saves_on_throw"));
+    public static final BagCounter SAVES_ON_DROP = register(new BagCounter("saves_on_drop"));
+    public static final BagCounter SAVES_ON_DISCONNECT = register(new BagCounter("saves_on_disconnect"));
+
+    public static final BagCounter DEFERRED_SAVES = register(new BagCounter("deferred_saves"));
+    public static final BagCounter DEFERRED_SAVE_FALLBACKS = register(new BagCounter("deferred_save_fallbacks"));
+    public static final BagCounter DEFERRED_SAVE_WAITS = register(new BagCounter("deferred_save_waits"));
+
+    //  The interval of the periodic log line, in ticks. A value of 0 or less disables it
+    private static volatile int logInterval = Integer.getInteger("simple-immersive-bags.metrics.logInterval", 0) * 20;
+
+    private static <T extends BagMetric> T register(T metric) {
+        METRICS.add(metric);
+        return metric;
+    }
+
+    public static List<BagMetric> getAll() {
+        return Collections.unmodifiableList(METRICS);
+    }
+
+    public static void resetAll() {
+        METRICS.forEach(BagMetric::reset);
+    }
+
+    public static int getLogInterval() {
+        return logInterval;
+    }
+
+    public static void setLogInterval(int ticks) {
+        logInterval = ticks;
+    }
+
+    public static String summarize() {
+
+        StringBuilder summary = new StringBuilder();
+        for (BagMetric metric : METRICS) {
+
+            if (!summary.isEmpty()) {
+                summary.append("; ");
+            }
+
+            summary.append(metric.getName()).append(": ").append(metric.describe());
+
+        }
+
+        return summary.toString();
+
+    }
+
+    public static void onServerTick(MinecraftServer server) {
+
+        int interval = logInterval;
+        if (interval > 0 && server.getTicks() % interval == 0) {
+            SimpleImmersiveBags.LOGGER.info("Bag metrics at tick {}: {}", server.getTicks(), summarize());
+        }
+
+    }
+
+    public static long startTimer() {
+        return System.nanoTime();
+    }
+
+    public static void stopTimer(BagHistogram histogram, long startTime) {
+        histogram.record(System.nanoTime() - startTime);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.github.eggohito.simple_immersive_bags.mixin;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
+import net.fabricmc.fabric.api.lookup.v1.item.ItemApiLookup;
+import net.fabricmc.fabric.impl.lookup.item.ItemApiLookupImpl;
+import net.minecraft.item.ItemConvertible;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+//  Invalidates the items that were cached as not having a bag container whenever a provider is registered for SimpleImmersiveBags#ITEM_CONTAINER,
+//  no matter which mod registers it. Items registered through ItemApiLookup#registerSelf go through #registerForItems as well
+@SuppressWarnings("UnstableApiUsage")
+@Mixin(value = ItemApiLookupImpl.class, remap = false)
+public abstract class ItemApiLookupImplMixin<A, C> {
+
+    @Inject(method = "registerForItems", at = @At("TAIL"))
+    private void sib$invalidateOnRegister(ItemApiLookup.ItemApiProvider<A, C> provider, ItemConvertible[] items, CallbackInfo ci) {
+
+        if ((Object) this == SimpleImmersiveBags.ITEM_CONTAINER) {
+            BagUtil.onContainerProviderRegistered(false);
+        }
+
+    }
+
+    @Inject(method = "registerFallback", at = @At("TAIL"))
+    private void sib$invalidateOnRegisterFallback(ItemApiLookup.ItemApiProvider<A, C> fallbackProvider, CallbackInfo ci) {
+
+        if ((Object) this == SimpleImmersiveBags.ITEM_CONTAINER) {
+            BagUtil.onContainerProviderRegistered(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.github.eggohito.simple_immersive_bags.mixin;
+
+import com.github.eggohito.simple_immersive_bags.duck.ItemBagContainerCache;
+import com.github.eggohito.simple_immersive_bags.util.BagContainerResolution;
+import net.minecraft.item.Item;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(Item.class)
+public abstract class ItemMixin implements ItemBagContainerCache {
+
+    //  Items are shared by every thread that looks up their bag container, so the (immutable) resolution is published through a single
+    //  volatile field. Null means that it hasn't been resolved yet
+    @Unique
+    @Nullable
+    private volatile BagContainerResolution sib$bagContainerResolution;
+
+    @Override
+    public @Nullable BagContainerResolution sib$getBagContainerResolution() {
+        return sib$bagContainerResolution;
+    }
+
+    @Override
+    public void sib$setBagContainerResolution(BagContainerResolution resolution) {
+        this.sib$bagContainerResolution = resolution;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.github.eggohito.simple_immersive_bags.mixin;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.duck.ItemStackPendingSave;
+import com.github.eggohito.simple_immersive_bags.inventory.BagSavePipeline;
+import com.github.eggohito.simple_immersive_bags.util.BagNbtFormat;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(ItemStack.class)
+public abstract class ItemStackMixin implements ItemStackPendingSave {
+
+    @Shadow public abstract Item getItem();
+
+    //  Only written by the server thread, which is the only thread that acts on it. Any other thread just skips the save pipeline
+    @Unique
+    private boolean sib$savePending;
+
+    @Override
+    public boolean sib$isSavePending() {
+        return sib$savePending;
+    }
+
+    @Override
+    public void sib$setSavePending(boolean savePending) {
+        this.sib$savePending = savePending;
+    }
+
+    //  Commit the pending save of this bag stack (if any) before it's copied or serialized, so neither ends up with its previous contents.
+    //  Stacks without a pending save (which is nearly all of them) only have their own flag checked
+    @Inject(method = "copy", at = @At("HEAD"))
+    private void sib$completeSaveOnCopy(CallbackInfoReturnable<ItemStack> cir) {
+        BagSavePipeline.complete((ItemStack) (Object) this);
+    }
+
+    @Inject(method = "writeNbt", at = @At("HEAD"))
+    private void sib$completeSaveOnWrite(NbtCompound nbt, CallbackInfoReturnable<NbtCompound> cir) {
+        BagSavePipeline.complete((ItemStack) (Object) this);
+    }
+
+    //  Write the contents of bag stacks in the compact format. This only touches the serialized copy of the stack's NBT, and
+    //  the contents are expanded back by BagItem#postProcessNbt once the stack is read
+    @Inject(method = "writeNbt", at = @At("TAIL"))
+    private void sib$compactContentsOnWrite(NbtCompound nbt, CallbackInfoReturnable<NbtCompound> cir) {
+
+        if (this.getItem() instanceof BagItem && nbt.get("tag") instanceof NbtCompound tagNbt && tagNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound itemContainerNbt) {
+            BagNbtFormat.compact(itemContainerNbt);
+        }
+
+    }
+
+}
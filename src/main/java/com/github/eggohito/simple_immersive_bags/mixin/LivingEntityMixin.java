@@ -1,7 +1,10 @@
 package com.github.eggohito.simple_immersive_bags.mixin;
 
 import com.github.eggohito.simple_immersive_bags.duck.EntityBagUpdateStatus;
+import com.github.eggohito.simple_immersive_bags.duck.EntityOpenedBagCache;
 import com.github.eggohito.simple_immersive_bags.util.BagUpdateStatus;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
+import com.github.eggohito.simple_immersive_bags.util.OpenedBagCache;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
@@ -13,7 +16,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(LivingEntity.class)
-public abstract class LivingEntityMixin extends Entity implements EntityBagUpdateStatus {
+public abstract class LivingEntityMixin extends Entity implements EntityBagUpdateStatus, EntityOpenedBagCache {
 
     public LivingEntityMixin(EntityType<?> type, World world) {
         super(type, world);
@@ -22,6 +25,9 @@ public abstract class LivingEntityMixin extends Entity implements EntityBagUpdat
     @Unique
     private BagUpdateStatus sib$updateStatus = BagUpdateStatus.INIT;
 
+    @Unique
+    private OpenedBagCache sib$openedBagCache;
+
     @Override
     public BagUpdateStatus sib$getStatus() {
         return sib$updateStatus;
@@ -32,6 +38,17 @@ public abstract class LivingEntityMixin extends Entity implements EntityBagUpdat
         this.sib$updateStatus = sib$updateStatus;
     }
 
+    @Override
+    public OpenedBagCache sib$getOpenedBagCache() {
+
+        if (sib$openedBagCache == null) {
+            this.sib$openedBagCache = new OpenedBagCache(BagUtil.getEquipmentSlotCount());
+        }
+
+        return sib$openedBagCache;
+
+    }
+
     @Inject(method = "tick", at = @At("TAIL"))
     private void sib$setStatusToNormal(CallbackInfo ci) {
         this.sib$setStatus(BagUpdateStatus.NONE);
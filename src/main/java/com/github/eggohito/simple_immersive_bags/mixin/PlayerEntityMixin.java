@@ -1,9 +1,10 @@
 package com.github.eggohito.simple_immersive_bags.mixin;
 
-import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
 import com.github.eggohito.simple_immersive_bags.util.BagState;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
@@ -35,9 +36,10 @@ public abstract class PlayerEntityMixin extends LivingEntity {
         }
 
         ItemStack bagStack = bagScreenHandler.getSourceStack();
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(bagStack, null);
+        BagContainer bagContainer = BagUtil.findContainer(bagStack);
 
         if (bagContainer != null) {
+            BagMetrics.SAVES_ON_DROP.increment();
             bagScreenHandler.getBagInventory().onClose((PlayerEntity) (Object) this);
         }
 
@@ -46,7 +48,7 @@ public abstract class PlayerEntityMixin extends LivingEntity {
     @Inject(method = "dropItem(Lnet/minecraft/item/ItemStack;ZZ)Lnet/minecraft/entity/ItemEntity;", at = @At("HEAD"))
     private void sib$closeBagOnDrop(ItemStack stack, boolean throwRandomly, boolean retainOwnership, CallbackInfoReturnable<ItemEntity> cir) {
 
-        BagContainer dropBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(stack, null);
+        BagContainer dropBagContainer = BagUtil.findContainer(stack);
 
         if (dropBagContainer != null && dropBagContainer.getState(stack) == BagState.OPENED) {
             dropBagContainer.setState(stack, BagState.CLOSED);
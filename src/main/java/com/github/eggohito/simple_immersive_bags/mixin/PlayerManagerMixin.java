@@ -0,0 +1,43 @@
+package com.github.eggohito.simple_immersive_bags.mixin;
+
+import com.github.eggohito.simple_immersive_bags.inventory.BagSavePipeline;
+import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
+import net.minecraft.server.PlayerManager;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.List;
+
+@Mixin(PlayerManager.class)
+public abstract class PlayerManagerMixin {
+
+    @Shadow
+    @Final
+    private List<ServerPlayerEntity> players;
+
+    //  Submit the open bags of every player at once, so they're encoded in parallel while the data of each player is being saved. The
+    //  saves are committed before this method returns, so the still open bag inventories aren't modified in the meantime
+    @Inject(method = "saveAllPlayerData", at = @At("HEAD"))
+    private void sib$submitBagSaves(CallbackInfo ci) {
+
+        for (ServerPlayerEntity player : players) {
+
+            if (player.currentScreenHandler instanceof BagScreenHandler bagScreenHandler) {
+                bagScreenHandler.getBagInventory().saveDeferred();
+            }
+
+        }
+
+    }
+
+    @Inject(method = "saveAllPlayerData", at = @At("TAIL"))
+    private void sib$completeBagSaves(CallbackInfo ci) {
+        BagSavePipeline.completeAll();
+    }
+
+}
@@ -1,7 +1,7 @@
 package com.github.eggohito.simple_immersive_bags.mixin;
 
-import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
 import com.github.eggohito.simple_immersive_bags.util.BagState;
 import com.github.eggohito.simple_immersive_bags.util.BagUtil;
@@ -37,9 +37,10 @@ public abstract class ScreenHandlerMixin {
             return;
         }
 
-        BagContainer slotBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(slotStack, null);
+        BagContainer slotBagContainer = BagUtil.findContainer(slotStack);
 
         if (slotBagContainer != null && thisAsScreenHandler() instanceof BagScreenHandler bagScreenHandler) {
+            BagMetrics.SAVES_ON_PICKUP.increment();
             bagScreenHandler.getBagInventory().onClose(player);
             slotBagContainer.setState(slotStack, BagState.CLOSED);
         }
@@ -54,13 +55,14 @@ public abstract class ScreenHandlerMixin {
         }
 
         ItemStack slotStack = slot.getStack();
-        BagContainer slotBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(slotStack, null);
+        BagContainer slotBagContainer = BagUtil.findContainer(slotStack);
 
         if (slotBagContainer == null || !BagUtil.withinEquipmentBounds(player, slot)) {
             return;
         }
 
         if (thisAsScreenHandler() instanceof BagScreenHandler bagScreenHandler) {
+            BagMetrics.SAVES_ON_QUICK_MOVE.increment();
             bagScreenHandler.getBagInventory().onClose(player);
             slotBagContainer.setState(slotStack, BagState.CLOSED);
         }
@@ -83,9 +85,10 @@ public abstract class ScreenHandlerMixin {
 
         if ((swapStack.isEmpty() && slot.canTakeItems(player)) || (slot.canTakeItems(player) && slot.canInsert(swapStack))) {
 
-            BagContainer slotBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(slotStack, null);
+            BagContainer slotBagContainer = BagUtil.findContainer(slotStack);
 
             if (slotBagContainer != null && thisAsScreenHandler() instanceof BagScreenHandler bagScreenHandler) {
+                BagMetrics.SAVES_ON_SWAP.increment();
                 bagScreenHandler.getBagInventory().onClose(player);
                 slotBagContainer.setState(slotStack, BagState.CLOSED);
             }
@@ -101,9 +104,10 @@ public abstract class ScreenHandlerMixin {
             return;
         }
 
-        BagContainer dropBagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(dropStack, null);
+        BagContainer dropBagContainer = BagUtil.findContainer(dropStack);
 
         if (dropBagContainer != null && thisAsScreenHandler() instanceof BagScreenHandler bagScreenHandler) {
+            BagMetrics.SAVES_ON_THROW.increment();
             bagScreenHandler.getBagInventory().onClose(player);
         }
 
@@ -1,5 +1,6 @@
 package com.github.eggohito.simple_immersive_bags.mixin;
 
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
 import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
 import com.mojang.authlib.GameProfile;
 import net.minecraft.entity.player.PlayerEntity;
@@ -22,6 +23,7 @@ public abstract class ServerPlayerEntityMixin extends PlayerEntity {
     private void sib$saveBagOnDisconnect(CallbackInfo ci) {
 
         if (this.currentScreenHandler instanceof BagScreenHandler bagScreenHandler) {
+            BagMetrics.SAVES_ON_DISCONNECT.increment();
             bagScreenHandler.getBagInventory().onClose(this);
         }
 
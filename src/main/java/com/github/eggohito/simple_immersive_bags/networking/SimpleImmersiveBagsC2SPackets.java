@@ -1,20 +1,29 @@
 package com.github.eggohito.simple_immersive_bags.networking;
 
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
 import com.github.eggohito.simple_immersive_bags.networking.c2s.OpenBagC2SPacket;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.ScrollBagC2SPacket;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.SortBagContentsC2SPacket;
+import com.github.eggohito.simple_immersive_bags.networking.c2s.TransferBagContentsC2SPacket;
+import com.github.eggohito.simple_immersive_bags.screen.BagScreenHandler;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.item.ItemStack;
 import net.minecraft.server.network.ServerPlayerEntity;
+import org.jetbrains.annotations.Nullable;
 
 public class SimpleImmersiveBagsC2SPackets {
 
     public static void registerAll() {
 
-        ServerPlayConnectionEvents.INIT.register((handler, server) ->
-            ServerPlayNetworking.registerReceiver(handler, OpenBagC2SPacket.TYPE, SimpleImmersiveBagsC2SPackets::onBagOpened)
-        );
+        ServerPlayConnectionEvents.INIT.register((handler, server) -> {
+            ServerPlayNetworking.registerReceiver(handler, OpenBagC2SPacket.TYPE, SimpleImmersiveBagsC2SPackets::onBagOpened);
+            ServerPlayNetworking.registerReceiver(handler, TransferBagContentsC2SPacket.TYPE, SimpleImmersiveBagsC2SPackets::onBagContentsTransferred);
+            ServerPlayNetworking.registerReceiver(handler, SortBagContentsC2SPacket.TYPE, SimpleImmersiveBagsC2SPackets::onBagContentsSorted);
+            ServerPlayNetworking.registerReceiver(handler, ScrollBagC2SPacket.TYPE, SimpleImmersiveBagsC2SPackets::onBagScrolled);
+        });
 
     }
 
@@ -28,4 +37,60 @@ public class SimpleImmersiveBagsC2SPackets {
 
     }
 
+    private static void onBagContentsTransferred(TransferBagContentsC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
+
+        BagScreenHandler bagScreenHandler = getBagScreenHandler(player, packet.syncId());
+        if (bagScreenHandler == null) {
+            return;
+        }
+
+        //  Every slot changed by the transfer is synced to the client at once
+        bagScreenHandler.transferContents(packet.mode());
+        bagScreenHandler.sendContentUpdates();
+
+    }
+
+    private static void onBagContentsSorted(SortBagContentsC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
+
+        BagScreenHandler bagScreenHandler = getBagScreenHandler(player, packet.syncId());
+        if (bagScreenHandler == null) {
+            return;
+        }
+
+        bagScreenHandler.sortContents(packet.sortKey());
+        bagScreenHandler.sendContentUpdates();
+
+    }
+
+    private static void onBagScrolled(ScrollBagC2SPacket packet, ServerPlayerEntity player, PacketSender responseSender) {
+
+        BagScreenHandler bagScreenHandler = getBagScreenHandler(player, packet.syncId());
+        if (bagScreenHandler == null) {
+            return;
+        }
+
+        //  The whole state is synced, rather than only the changes since the last sync. The bag slots now refer to other stacks, which
+        //  can't be compared with the tracked stacks of the previous rows, and the client's copy of the newly visible rows may be stale,
+        //  since rows that aren't visible (e.g. the ones deposited into) aren't synced
+        bagScreenHandler.scrollTo(packet.firstRow());
+        bagScreenHandler.syncState();
+
+    }
+
+    @Nullable
+    private static BagScreenHandler getBagScreenHandler(ServerPlayerEntity player, int syncId) {
+
+        if (player.isSpectator() || !(player.currentScreenHandler instanceof BagScreenHandler bagScreenHandler) || bagScreenHandler.syncId != syncId) {
+            return null;
+        }
+
+        if (!bagScreenHandler.canUse(player)) {
+            SimpleImmersiveBags.LOGGER.debug("Player {} interacted with invalid menu {}", player, bagScreenHandler);
+            return null;
+        }
+
+        return bagScreenHandler;
+
+    }
+
 }
@@ -0,0 +1,29 @@
+package com.github.eggohito.simple_immersive_bags.networking.c2s;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+
+public record ScrollBagC2SPacket(int syncId, int firstRow) implements FabricPacket {
+
+    public static final PacketType<ScrollBagC2SPacket> TYPE = PacketType.create(
+        SimpleImmersiveBags.id("c2s/scroll_bag"), ScrollBagC2SPacket::read
+    );
+
+    private static ScrollBagC2SPacket read(PacketByteBuf buf) {
+        return new ScrollBagC2SPacket(buf.readVarInt(), buf.readVarInt());
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeVarInt(syncId);
+        buf.writeVarInt(firstRow);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.github.eggohito.simple_immersive_bags.networking.c2s;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.util.BagSortKey;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+
+public record SortBagContentsC2SPacket(int syncId, BagSortKey sortKey) implements FabricPacket {
+
+    public static final PacketType<SortBagContentsC2SPacket> TYPE = PacketType.create(
+        SimpleImmersiveBags.id("c2s/sort_bag_contents"), SortBagContentsC2SPacket::read
+    );
+
+    private static SortBagContentsC2SPacket read(PacketByteBuf buf) {
+        return new SortBagContentsC2SPacket(buf.readVarInt(), buf.readEnumConstant(BagSortKey.class));
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeVarInt(syncId);
+        buf.writeEnumConstant(sortKey);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.github.eggohito.simple_immersive_bags.networking.c2s;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.util.BagTransferMode;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+
+public record TransferBagContentsC2SPacket(int syncId, BagTransferMode mode) implements FabricPacket {
+
+    public static final PacketType<TransferBagContentsC2SPacket> TYPE = PacketType.create(
+        SimpleImmersiveBags.id("c2s/transfer_bag_contents"), TransferBagContentsC2SPacket::read
+    );
+
+    private static TransferBagContentsC2SPacket read(PacketByteBuf buf) {
+        return new TransferBagContentsC2SPacket(buf.readVarInt(), buf.readEnumConstant(BagTransferMode.class));
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeVarInt(syncId);
+        buf.writeEnumConstant(mode);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
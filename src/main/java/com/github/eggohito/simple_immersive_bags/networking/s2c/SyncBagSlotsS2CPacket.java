@@ -0,0 +1,69 @@
+package com.github.eggohito.simple_immersive_bags.networking.s2c;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record SyncBagSlotsS2CPacket(int syncId, int revision, IntList slots, List<ItemStack> stacks) implements FabricPacket {
+
+    public static final PacketType<SyncBagSlotsS2CPacket> TYPE = PacketType.create(
+        SimpleImmersiveBags.id("s2c/sync_bag_slots"), SyncBagSlotsS2CPacket::read
+    );
+
+    private static SyncBagSlotsS2CPacket read(PacketByteBuf buf) {
+
+        int syncId = buf.readVarInt();
+        int revision = buf.readVarInt();
+
+        int count = buf.readVarInt();
+        int slot = -1;
+
+        IntList slots = new IntArrayList(count);
+        List<ItemStack> stacks = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            slot += buf.readVarInt() + 1;
+            slots.add(slot);
+            stacks.add(buf.readItemStack());
+        }
+
+        return new SyncBagSlotsS2CPacket(syncId, revision, slots, stacks);
+
+    }
+
+    //  The slot indices are sorted in ascending order, so each of them is written as the gap from the previous one
+    @Override
+    public void write(PacketByteBuf buf) {
+
+        buf.writeVarInt(syncId);
+        buf.writeVarInt(revision);
+
+        buf.writeVarInt(slots.size());
+        int previousSlot = -1;
+
+        for (int i = 0; i < slots.size(); i++) {
+
+            int slot = slots.getInt(i);
+
+            buf.writeVarInt(slot - previousSlot - 1);
+            buf.writeItemStack(stacks.get(i));
+
+            previousSlot = slot;
+
+        }
+
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+}
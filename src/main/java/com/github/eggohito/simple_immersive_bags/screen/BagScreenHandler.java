@@ -1,25 +1,44 @@
 package com.github.eggohito.simple_immersive_bags.screen;
 
 import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
+import com.github.eggohito.simple_immersive_bags.inventory.BagSlotIndex;
+import com.github.eggohito.simple_immersive_bags.inventory.DelegatedBagInventory;
+import com.github.eggohito.simple_immersive_bags.inventory.PagedBagInventory;
 import com.github.eggohito.simple_immersive_bags.mixin.ScreenHandlerAccessor;
 import com.github.eggohito.simple_immersive_bags.mixin.SlotAccessor;
 import com.github.eggohito.simple_immersive_bags.screen.slot.BagSlot;
+import com.github.eggohito.simple_immersive_bags.util.BagSortKey;
+import com.github.eggohito.simple_immersive_bags.util.BagTransferMode;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.screen.PlayerScreenHandler;
+import net.minecraft.screen.ScreenHandlerSyncHandler;
 import net.minecraft.screen.slot.Slot;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.util.Set;
+
 public class BagScreenHandler extends PlayerScreenHandler {
 
     public static final int BAG_TITLE_Y_OFFSET = 11;
 
+    //  Bags with more rows than this only get slots for this many rows, which can be scrolled through
+    public static final int MAX_VISIBLE_ROWS = 6;
+
+    //  The sync ID of provisional handlers, which is never used by a handler of the server
+    public static final int PROVISIONAL_SYNC_ID = Integer.MIN_VALUE;
+
     private final BagInventory bagInventory;
+    private final PlayerEntity player;
 
     private final Vector2i topPos;
     private final Vector2i offhandPos;
@@ -27,14 +46,38 @@ public class BagScreenHandler extends PlayerScreenHandler {
     private final int bagStart;
     private final int bagEnd;
 
+    @Nullable
+    private final PagedBagInventory pagedInventory;
+
+    private final boolean provisional;
+
+    @Nullable
+    private BagScreenHandlerSyncHandler bagSyncHandler;
+
     public BagScreenHandler(int syncId, PlayerInventory playerInventory, PlayerEntity player, BagInventory bagInventory) {
+        this(syncId, playerInventory, player, bagInventory, false);
+    }
+
+    private BagScreenHandler(int syncId, PlayerInventory playerInventory, PlayerEntity player, BagInventory bagInventory, boolean provisional) {
         super(playerInventory, !player.getWorld().isClient, player);
 
         this.bagInventory = bagInventory;
+        this.player = player;
+        this.provisional = provisional;
+
         bagInventory.onOpen(player);
 
+        //  Delegated bag inventories aren't paged, since their slots have to know about the delegate
+        this.pagedInventory = bagInventory.getRows() > MAX_VISIBLE_ROWS && !(bagInventory instanceof DelegatedBagInventory)
+            ? new PagedBagInventory(bagInventory, MAX_VISIBLE_ROWS)
+            : null;
+
+        BagInventory slotInventory = pagedInventory != null
+            ? pagedInventory
+            : bagInventory;
+
         this.bagStart = this.slots.size();
-        this.bagEnd = bagStart + bagInventory.size();
+        this.bagEnd = bagStart + slotInventory.size();
 
         //  Override the sync ID constant and screen handler type set in PlayerScreenHandler
         ((ScreenHandlerAccessor) this).setSyncId(syncId);
@@ -44,44 +87,73 @@ public class BagScreenHandler extends PlayerScreenHandler {
         Slot topSlot = this.getSlot(9);
         this.topPos = new Vector2i(topSlot.x, topSlot.y);
 
+        BagSlotLayout layout = BagSlotLayout.get(slotInventory.getRows(), slotInventory.getColumns(), topPos.x, topPos.y);
+
         //  Offset the player's inventory and hotbar slots added in PlayerScreenHandler
-        this.slots.stream()
-            .filter(slot -> slot.inventory == playerInventory && slot.getIndex() < playerInventory.size() - 5)
-            .forEach(slot -> ((SlotAccessor) slot).setY(slot.y + (bagInventory.getRows() * 18 + 4 + BAG_TITLE_Y_OFFSET)));
+        for (int i = INVENTORY_START; i < HOTBAR_END; i++) {
+            Slot slot = this.getSlot(i);
+            ((SlotAccessor) slot).setY(slot.y + layout.getPlayerSlotYOffset());
+        }
 
         //  Query the offhand slot from the player's inventory
         Slot offhandSlot = this.getSlot(OFFHAND_ID);
         this.offhandPos = new Vector2i(offhandSlot.x, offhandSlot.y);
 
-        int bagRows = bagInventory.getRows();
-        int bagColumns = bagInventory.getColumns();
+        //  Add the slots that correspond to the bag's inventory, positioned after the layout of the bag's size
+        for (int i = 0; i < layout.size(); i++) {
+            this.addSlot(new BagSlot(slotInventory, bagStart + i, bagStart, layout.getSlotX(i), layout.getSlotY(i)));
+        }
+
+    }
 
-        int bagSlotIndex = bagStart;
+    public static BagScreenHandler create(int syncId, PlayerInventory playerInventory, PacketByteBuf buf) {
+        PlayerEntity player = playerInventory.player;
+        return new BagScreenHandler(syncId, playerInventory, player, BagInventory.receive(player, buf));
+    }
 
-        for (int rowIndex = 0; rowIndex < bagRows; rowIndex++) {
-            for (int columnIndex = 0; columnIndex < bagColumns; columnIndex++) {
+    //  Creates a client-side handler that stands in for the handler of the server until it's opened. It isn't synced with the server,
+    //  so its screen has to reject any interaction with it
+    public static BagScreenHandler createProvisional(PlayerInventory playerInventory, BagInventory bagInventory) {
+        return new BagScreenHandler(PROVISIONAL_SYNC_ID, playerInventory, playerInventory.player, bagInventory, true);
+    }
 
-                //  Calculate the X and Y values for the bag's slot
-                int bagSlotX = topPos.x + columnIndex * 18;
-                int bagSlotY = (topPos.y + rowIndex * 18) + BAG_TITLE_Y_OFFSET;
+    @Override
+    public void updateSyncHandler(ScreenHandlerSyncHandler handler) {
 
-                //  Add the slot that corresponds to the bag's inventory with the calculated slot index
-                this.addSlot(new BagSlot(bagInventory, bagSlotIndex++, bagStart, bagSlotX, bagSlotY));
+        if (player instanceof ServerPlayerEntity serverPlayer) {
+            this.bagSyncHandler = new BagScreenHandlerSyncHandler(handler, serverPlayer, bagStart, bagEnd);
+            super.updateSyncHandler(bagSyncHandler);
+        }
 
-            }
+        else {
+            super.updateSyncHandler(handler);
         }
 
     }
 
-    public static BagScreenHandler create(int syncId, PlayerInventory playerInventory, PacketByteBuf buf) {
-        PlayerEntity player = playerInventory.player;
-        return new BagScreenHandler(syncId, playerInventory, player, BagInventory.receive(player, buf));
+    @Override
+    public void sendContentUpdates() {
+        super.sendContentUpdates();
+        this.flushBagSlots();
+    }
+
+    @Override
+    public void updateToClient() {
+        super.updateToClient();
+        this.flushBagSlots();
     }
 
     @Override
     public void onClosed(PlayerEntity player) {
+
+        //  The held stacks of the bag inventory are no longer modified once it's closed, so its contents can be saved off-thread
+        if (!player.getWorld().isClient) {
+            bagInventory.saveDeferred();
+        }
+
         bagInventory.onClose(player);
         super.onClosed(player);
+
     }
 
     @Override
@@ -150,7 +222,7 @@ public class BagScreenHandler extends PlayerScreenHandler {
 
         else if (slotIndex >= HOTBAR_START && slotIndex < HOTBAR_END) {
 
-            if (!this.insertItem(stackInSlot, bagStart, bagEnd, false)) {
+            if (!this.insertIntoBag(stackInSlot)) {
                 return super.quickMove(player, slotIndex);
             }
 
@@ -181,6 +253,19 @@ public class BagScreenHandler extends PlayerScreenHandler {
 
     }
 
+    //  Sends the changes of the bag's slots since the last flush to the client in a single packet
+    public void flushBagSlots() {
+
+        if (bagSyncHandler != null) {
+            bagSyncHandler.flush(this);
+        }
+
+    }
+
+    public boolean isProvisional() {
+        return provisional;
+    }
+
     public Identifier getScreenTextureId() {
         return bagInventory.getScreenTextureId();
     }
@@ -189,6 +274,157 @@ public class BagScreenHandler extends PlayerScreenHandler {
         return bagInventory.getSourceStack();
     }
 
+    //  Same as #insertItem over the bag slots, except that the slots to merge into or to fill are looked up from the slot index of the
+    //  bag inventory, instead of scanning through every bag slot. This inserts into the bag inventory itself, so slots that aren't
+    //  visible in a paged bag are filled as well
+    protected boolean insertIntoBag(ItemStack stack) {
+
+        BagSlotIndex slotIndex = bagInventory.getSlotIndex();
+        if (slotIndex == null) {
+            return this.insertItem(stack, bagStart, bagEnd, false);
+        }
+
+        boolean inserted = false;
+        while (!stack.isEmpty() && stack.isStackable()) {
+
+            int inventorySlot = slotIndex.findMergeableSlot(stack);
+            if (inventorySlot < 0) {
+                break;
+            }
+
+            ItemStack stackInSlot = bagInventory.getStack(inventorySlot);
+            int count = Math.min(stack.getCount(), this.getMaxCountInBag(stackInSlot) - stackInSlot.getCount());
+
+            stackInSlot.increment(count);
+            stack.decrement(count);
+
+            bagInventory.markDirty(inventorySlot);
+            inserted = true;
+
+        }
+
+        if (stack.isEmpty()) {
+            return inserted;
+        }
+
+        //  Whether a bag slot accepts a stack doesn't depend on the slot, so only the first empty slot has to be checked
+        int inventorySlot = slotIndex.findEmptySlot(0);
+        if (inventorySlot >= 0 && this.getSlot(bagStart).canInsert(stack)) {
+            bagInventory.setStack(inventorySlot, stack.split(Math.min(stack.getCount(), this.getMaxCountInBag(stack))));
+            inserted = true;
+        }
+
+        return inserted;
+
+    }
+
+    private int getMaxCountInBag(ItemStack stack) {
+        return Math.min(stack.getMaxCount(), bagInventory.getMaxCountPerStack());
+    }
+
+    public void transferContents(BagTransferMode mode) {
+        switch (mode) {
+            case DEPOSIT -> this.depositMatchingStacks();
+            case RESTOCK -> this.restockMatchingStacks();
+        }
+    }
+
+    public void sortContents(BagSortKey sortKey) {
+        bagInventory.sort(sortKey);
+    }
+
+    //  Moves the stacks of the player's inventory (excluding the hotbar) into the bag, if the bag already has stacks of the same item
+    protected void depositMatchingStacks() {
+
+        Set<Item> bagItems = new ReferenceOpenHashSet<>();
+        for (int i = 0; i < bagInventory.size(); i++) {
+
+            ItemStack stack = bagInventory.getStack(i);
+            if (!stack.isEmpty()) {
+                bagItems.add(stack.getItem());
+            }
+
+        }
+
+        for (int i = INVENTORY_START; i < INVENTORY_END && !bagItems.isEmpty(); i++) {
+
+            Slot slot = this.getSlot(i);
+            ItemStack stack = slot.getStack();
+
+            if (!stack.isEmpty() && bagItems.contains(stack.getItem()) && this.insertIntoBag(stack)) {
+
+                if (stack.isEmpty()) {
+                    slot.setStack(ItemStack.EMPTY);
+                }
+
+                else {
+                    slot.markDirty();
+                }
+
+            }
+
+        }
+
+    }
+
+    //  Moves the stacks of the bag into the player's inventory (including the hotbar), if the player already has stacks of the same item
+    protected void restockMatchingStacks() {
+
+        Set<Item> playerItems = new ReferenceOpenHashSet<>();
+        for (int i = INVENTORY_START; i < HOTBAR_END; i++) {
+
+            ItemStack stack = this.getSlot(i).getStack();
+            if (!stack.isEmpty()) {
+                playerItems.add(stack.getItem());
+            }
+
+        }
+
+        for (int i = 0; i < bagInventory.size() && !playerItems.isEmpty(); i++) {
+
+            ItemStack stack = bagInventory.getStack(i);
+            if (!stack.isEmpty() && playerItems.contains(stack.getItem()) && this.insertItem(stack, INVENTORY_START, HOTBAR_END, false)) {
+
+                if (stack.isEmpty()) {
+                    bagInventory.setStack(i, ItemStack.EMPTY);
+                }
+
+                else {
+                    bagInventory.markDirty(i);
+                }
+
+            }
+
+        }
+
+    }
+
+    public boolean isPaged() {
+        return pagedInventory != null;
+    }
+
+    public int getFirstVisibleRow() {
+        return pagedInventory != null
+            ? pagedInventory.getFirstRow()
+            : 0;
+    }
+
+    public int getMaxFirstVisibleRow() {
+        return pagedInventory != null
+            ? pagedInventory.getMaxFirstRow()
+            : 0;
+    }
+
+    //  Only changes which part of the bag inventory the bag slots refer to. The server has to sync the whole state afterwards (see
+    //  #syncState), since the slots of the client now refer to stacks that were never synced
+    public void scrollTo(int firstRow) {
+
+        if (pagedInventory != null) {
+            pagedInventory.setFirstRow(firstRow);
+        }
+
+    }
+
     public BagInventory getBagInventory() {
         return bagInventory;
     }
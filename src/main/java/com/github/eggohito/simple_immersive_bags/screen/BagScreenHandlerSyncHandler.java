@@ -0,0 +1,122 @@
+package com.github.eggohito.simple_immersive_bags.screen;
+
+import com.github.eggohito.simple_immersive_bags.networking.s2c.SyncBagSlotsS2CPacket;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.item.ItemStack;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.ScreenHandlerSyncHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.collection.DefaultedList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+//  Wraps the sync handler of the player, and syncs the slots of the bag with SyncBagSlotsS2CPacket instead of vanilla's packets. Slot
+//  changes are batched until they're flushed, and empty slots are skipped when syncing the whole state
+public class BagScreenHandlerSyncHandler implements ScreenHandlerSyncHandler {
+
+    private final ScreenHandlerSyncHandler delegate;
+    private final ServerPlayerEntity player;
+
+    private final int bagStart;
+    private final int bagEnd;
+
+    private final BitSet pendingSlots = new BitSet();
+    private final ItemStack[] pendingStacks;
+
+    public BagScreenHandlerSyncHandler(ScreenHandlerSyncHandler delegate, ServerPlayerEntity player, int bagStart, int bagEnd) {
+        this.delegate = delegate;
+        this.player = player;
+        this.bagStart = bagStart;
+        this.bagEnd = bagEnd;
+        this.pendingStacks = new ItemStack[bagEnd - bagStart];
+    }
+
+    @Override
+    public void updateState(ScreenHandler handler, DefaultedList<ItemStack> stacks, ItemStack cursorStack, int[] properties) {
+
+        //  The passed stacks are the tracked stacks of the handler, so they have to be copied before leaving the bag slots out
+        DefaultedList<ItemStack> nonBagStacks = DefaultedList.ofSize(stacks.size(), ItemStack.EMPTY);
+
+        IntList bagSlots = new IntArrayList();
+        List<ItemStack> bagStacks = new ArrayList<>();
+
+        for (int slot = 0; slot < stacks.size(); slot++) {
+
+            ItemStack stack = stacks.get(slot);
+
+            if (!this.isBagSlot(slot)) {
+                nonBagStacks.set(slot, stack);
+            }
+
+            else if (!stack.isEmpty()) {
+                bagSlots.add(slot);
+                bagStacks.add(stack);
+            }
+
+        }
+
+        delegate.updateState(handler, nonBagStacks, cursorStack, properties);
+
+        pendingSlots.clear();
+        Arrays.fill(pendingStacks, null);
+
+        if (!bagSlots.isEmpty()) {
+            ServerPlayNetworking.send(player, new SyncBagSlotsS2CPacket(handler.syncId, handler.nextRevision(), bagSlots, bagStacks));
+        }
+
+    }
+
+    @Override
+    public void updateSlot(ScreenHandler handler, int slot, ItemStack stack) {
+
+        if (!this.isBagSlot(slot)) {
+            delegate.updateSlot(handler, slot, stack);
+            return;
+        }
+
+        //  The passed stack is a copy that the handler only ever replaces, so it can be held onto until the next flush
+        pendingSlots.set(slot - bagStart);
+        pendingStacks[slot - bagStart] = stack;
+
+    }
+
+    @Override
+    public void updateCursorStack(ScreenHandler handler, ItemStack stack) {
+        delegate.updateCursorStack(handler, stack);
+    }
+
+    @Override
+    public void updateProperty(ScreenHandler handler, int property, int value) {
+        delegate.updateProperty(handler, property, value);
+    }
+
+    public void flush(ScreenHandler handler) {
+
+        if (pendingSlots.isEmpty()) {
+            return;
+        }
+
+        IntList bagSlots = new IntArrayList(pendingSlots.cardinality());
+        List<ItemStack> bagStacks = new ArrayList<>(pendingSlots.cardinality());
+
+        for (int index = pendingSlots.nextSetBit(0); index >= 0; index = pendingSlots.nextSetBit(index + 1)) {
+            bagSlots.add(bagStart + index);
+            bagStacks.add(pendingStacks[index]);
+            pendingStacks[index] = null;
+        }
+
+        pendingSlots.clear();
+        ServerPlayNetworking.send(player, new SyncBagSlotsS2CPacket(handler.syncId, handler.nextRevision(), bagSlots, bagStacks));
+
+    }
+
+    private boolean isBagSlot(int slot) {
+        return slot >= bagStart && slot < bagEnd;
+    }
+
+}
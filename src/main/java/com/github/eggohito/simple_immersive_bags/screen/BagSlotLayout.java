@@ -0,0 +1,64 @@
+package com.github.eggohito.simple_immersive_bags.screen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//  The positions of the bag slots of a bag screen handler, and the offset of the player's inventory and hotbar slots below them. These
+//  only depend on the size of the (visible part of the) bag and the position of the player's inventory, so they're computed once per
+//  size and shared by every handler of that size, on both the client and the server
+public class BagSlotLayout {
+
+    private static final Map<Key, BagSlotLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    private final int[] slotXs;
+    private final int[] slotYs;
+
+    private final int playerSlotYOffset;
+
+    private BagSlotLayout(Key key) {
+
+        int size = key.rows() * key.columns();
+
+        this.slotXs = new int[size];
+        this.slotYs = new int[size];
+
+        for (int slot = 0; slot < size; slot++) {
+
+            int rowIndex = slot / key.columns();
+            int columnIndex = slot % key.columns();
+
+            slotXs[slot] = key.topX() + columnIndex * 18;
+            slotYs[slot] = (key.topY() + rowIndex * 18) + BagScreenHandler.BAG_TITLE_Y_OFFSET;
+
+        }
+
+        this.playerSlotYOffset = key.rows() * 18 + 4 + BagScreenHandler.BAG_TITLE_Y_OFFSET;
+
+    }
+
+    //  The top position is the position of the top-left most slot of the player's inventory, before it's offset
+    public static BagSlotLayout get(int rows, int columns, int topX, int topY) {
+        return LAYOUTS.computeIfAbsent(new Key(rows, columns, topX, topY), BagSlotLayout::new);
+    }
+
+    public int size() {
+        return slotXs.length;
+    }
+
+    public int getSlotX(int slot) {
+        return slotXs[slot];
+    }
+
+    public int getSlotY(int slot) {
+        return slotYs[slot];
+    }
+
+    public int getPlayerSlotYOffset() {
+        return playerSlotYOffset;
+    }
+
+    private record Key(int rows, int columns, int topX, int topY) {
+
+    }
+
+}
@@ -1,19 +1,24 @@
 package com.github.eggohito.simple_immersive_bags.screen.slot;
 
-import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
 import com.github.eggohito.simple_immersive_bags.inventory.BagInventory;
 import com.github.eggohito.simple_immersive_bags.inventory.DelegatedBagInventory;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
 import net.minecraft.item.ItemStack;
 import net.minecraft.screen.slot.Slot;
 
 public class BagSlot extends Slot {
 
+    private final BagInventory bagInventory;
+
     private final int offsetIndex;
+    private final int inventoryIndex;
 
     public BagSlot(BagInventory inventory, int index, int indexOffset, int x, int y) {
         super(inventory, index - indexOffset, x, y);
+        this.bagInventory = inventory;
         this.offsetIndex = index;
+        this.inventoryIndex = index - indexOffset;
     }
 
     @Override
@@ -21,9 +26,14 @@ public class BagSlot extends Slot {
         return offsetIndex;
     }
 
+    @Override
+    public void markDirty() {
+        bagInventory.markDirty(inventoryIndex);
+    }
+
     @Override
     public boolean canInsert(ItemStack stack) {
-        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(stack, null);
+        BagContainer bagContainer = BagUtil.findContainer(stack);
         return inventory instanceof DelegatedBagInventory
             || (bagContainer == null || bagContainer.isEmpty(stack));
     }
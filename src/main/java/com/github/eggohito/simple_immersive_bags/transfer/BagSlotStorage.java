@@ -0,0 +1,147 @@
+package com.github.eggohito.simple_immersive_bags.transfer;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import com.github.eggohito.simple_immersive_bags.util.BagNbtFormat;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.base.SingleVariantItemStorage;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+//  A view of a single slot of the bag in the specified context. Reads and writes the entry of the slot straight from and to the NBT of
+//  the bag, and leaves the transaction handling (and thus the rollback) to the context, which exchanges the bag for its updated variant.
+//  These are only provided through SimpleImmersiveBags#ITEM_STORAGE
+@SuppressWarnings("UnstableApiUsage")
+public class BagSlotStorage extends SingleVariantItemStorage<ItemVariant> {
+
+    private final BagItem bagItem;
+    private final int slot;
+
+    public BagSlotStorage(BagItem bagItem, ContainerItemContext context, int slot) {
+        super(context);
+        this.bagItem = bagItem;
+        this.slot = slot;
+    }
+
+    @Override
+    protected ItemVariant getBlankResource() {
+        return ItemVariant.blank();
+    }
+
+    @Override
+    protected ItemVariant getResource(ItemVariant currentVariant) {
+
+        //  Read the item and its NBT straight from the entry, rather than decoding a whole stack just to turn it into a variant
+        NbtCompound entryNbt = this.getEntry(currentVariant);
+        if (entryNbt == null || entryNbt.getByte("Count") <= 0) {
+            return ItemVariant.blank();
+        }
+
+        Identifier itemId = Identifier.tryParse(entryNbt.getString("id"));
+        Item item = itemId != null
+            ? Registries.ITEM.get(itemId)
+            : Items.AIR;
+
+        return ItemVariant.of(item, entryNbt.contains("tag", NbtElement.COMPOUND_TYPE) ? entryNbt.getCompound("tag") : null);
+
+    }
+
+    @Override
+    protected long getAmount(ItemVariant currentVariant) {
+
+        NbtCompound entryNbt = this.getEntry(currentVariant);
+        return entryNbt != null
+            ? entryNbt.getByte("Count")
+            : 0;
+
+    }
+
+    @Override
+    protected long getCapacity(ItemVariant variant) {
+        return Math.min(variant.getItem().getMaxCount(), Inventory.MAX_COUNT_PER_STACK);
+    }
+
+    //  Non-empty bags can't be put into other bags, same as in BagSlot#canInsert
+    @Override
+    protected boolean canInsert(ItemVariant resource) {
+
+        ItemStack stack = resource.toStack();
+        BagContainer bagContainer = BagUtil.findContainer(stack);
+
+        return bagContainer == null
+            || bagContainer.isEmpty(stack);
+
+    }
+
+    @Override
+    protected ItemVariant getUpdatedVariant(ItemVariant currentVariant, ItemVariant newResource, long newAmount) {
+
+        //  Only the compounds (and the list) on the path to the changed entry are copied, everything else is shared with the current
+        //  variant, since the new variant makes its own copy of the NBT anyway
+        NbtCompound stackNbt = shallowCopy(currentVariant.getNbt());
+        NbtCompound itemContainerNbt = shallowCopy(stackNbt.get(SimpleImmersiveBags.ITEM_CONTAINER_ID) instanceof NbtCompound currentItemContainerNbt ? currentItemContainerNbt : null);
+
+        if (itemContainerNbt.get("Items") instanceof NbtList currentItemsNbt && (currentItemsNbt.isEmpty() || currentItemsNbt.getHeldType() == NbtElement.COMPOUND_TYPE)) {
+            NbtList itemsNbt = new NbtList();
+            itemsNbt.addAll(currentItemsNbt);
+            itemContainerNbt.put("Items", itemsNbt);
+        }
+
+        stackNbt.put(SimpleImmersiveBags.ITEM_CONTAINER_ID, itemContainerNbt);
+
+        NbtCompound entryNbt = null;
+        if (!newResource.isBlank() && newAmount > 0) {
+
+            entryNbt = new NbtCompound();
+
+            BagNbtFormat.putSlot(entryNbt, slot);
+            entryNbt.putString("id", Registries.ITEM.getId(newResource.getItem()).toString());
+            entryNbt.putByte("Count", (byte) newAmount);
+
+            if (newResource.hasNbt()) {
+                entryNbt.put("tag", newResource.copyNbt());
+            }
+
+        }
+
+        bagItem.putEntry(itemContainerNbt, BagItem.getOrCreateItemsNbt(itemContainerNbt), slot, entryNbt);
+        return ItemVariant.of(currentVariant.getItem(), stackNbt);
+
+    }
+
+    private static NbtCompound shallowCopy(@Nullable NbtCompound nbt) {
+
+        NbtCompound copiedNbt = new NbtCompound();
+        if (nbt != null) {
+
+            for (String key : nbt.getKeys()) {
+                copiedNbt.put(key, nbt.get(key));
+            }
+
+        }
+
+        return copiedNbt;
+
+    }
+
+    private NbtCompound getEntry(ItemVariant currentVariant) {
+
+        NbtCompound stackNbt = currentVariant.getNbt();
+        return stackNbt != null && stackNbt.contains(SimpleImmersiveBags.ITEM_CONTAINER_ID, NbtElement.COMPOUND_TYPE)
+            ? BagItem.getEntry(stackNbt.getCompound(SimpleImmersiveBags.ITEM_CONTAINER_ID), slot)
+            : null;
+
+    }
+
+}
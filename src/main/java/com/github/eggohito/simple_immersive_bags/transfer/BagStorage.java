@@ -0,0 +1,35 @@
+package com.github.eggohito.simple_immersive_bags.transfer;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.content.item.BagItem;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.base.CombinedStorage;
+import net.minecraft.nbt.NbtCompound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//  Exposes the slots of a bag stack as a single storage, which inserts into and extracts from the slots in order
+@SuppressWarnings("UnstableApiUsage")
+public class BagStorage extends CombinedStorage<ItemVariant, BagSlotStorage> {
+
+    public BagStorage(BagItem bagItem, ContainerItemContext context) {
+        super(createSlotStorages(bagItem, context));
+    }
+
+    private static List<BagSlotStorage> createSlotStorages(BagItem bagItem, ContainerItemContext context) {
+
+        NbtCompound stackNbt = context.getItemVariant().getNbt();
+        int size = bagItem.getSize(stackNbt != null ? stackNbt.getCompound(SimpleImmersiveBags.ITEM_CONTAINER_ID) : null);
+
+        List<BagSlotStorage> slotStorages = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            slotStorages.add(new BagSlotStorage(bagItem, context, slot));
+        }
+
+        return slotStorages;
+
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.github.eggohito.simple_immersive_bags.transfer;
+
+import com.github.eggohito.simple_immersive_bags.inventory.BagSavePipeline;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.base.SingleVariantStorage;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.item.ItemStack;
+
+//  The stack in an equipment slot of an entity, as the main slot of the context of the storage of a worn bag. Changes are only written
+//  back once the outermost transaction is committed. A bag that only had its contents changed is updated in place, so that the entity
+//  doesn't re-equip it (and play its equip sound) on every transfer
+@SuppressWarnings("UnstableApiUsage")
+public class EquippedStackStorage extends SingleVariantStorage<ItemVariant> {
+
+    private final LivingEntity entity;
+    private final EquipmentSlot slot;
+
+    public EquippedStackStorage(LivingEntity entity, EquipmentSlot slot) {
+
+        this.entity = entity;
+        this.slot = slot;
+
+        ItemStack equippedStack = entity.getEquippedStack(slot);
+        BagSavePipeline.complete(equippedStack);
+
+        this.variant = ItemVariant.of(equippedStack);
+        this.amount = equippedStack.getCount();
+
+    }
+
+    @Override
+    protected ItemVariant getBlankVariant() {
+        return ItemVariant.blank();
+    }
+
+    @Override
+    protected long getCapacity(ItemVariant variant) {
+        return variant.getItem().getMaxCount();
+    }
+
+    @Override
+    protected void onFinalCommit() {
+
+        ItemStack equippedStack = entity.getEquippedStack(slot);
+        if (amount > 0 && equippedStack.isOf(variant.getItem()) && equippedStack.getCount() == amount) {
+            equippedStack.setNbt(variant.copyNbt());
+        }
+
+        else {
+            entity.equipStack(slot, variant.toStack((int) amount));
+        }
+
+    }
+
+}
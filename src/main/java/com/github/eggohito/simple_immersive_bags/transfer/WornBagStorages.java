@@ -0,0 +1,74 @@
+package com.github.eggohito.simple_immersive_bags.transfer;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.util.BagUtil;
+import net.fabricmc.fabric.api.transfer.v1.context.ContainerItemContext;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemStorage;
+import net.fabricmc.fabric.api.transfer.v1.item.ItemVariant;
+import net.fabricmc.fabric.api.transfer.v1.storage.Storage;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.Equipment;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+//  Exposes the bags worn by entities as the item storage of the block space the entities are in, the same way hoppers reach the
+//  inventories of entities like chest minecarts. Hoppers query ItemStorage#SIDED (through the Transfer API) whenever there's no
+//  inventory to insert into or extract from, so this lets them fill and empty the bags of e.g. armor stands. Players are skipped,
+//  since hoppers never reach into the inventories of players either
+@SuppressWarnings("UnstableApiUsage")
+public class WornBagStorages {
+
+    public static void register() {
+        ItemStorage.SIDED.registerFallback(WornBagStorages::find);
+    }
+
+    @Nullable
+    private static Storage<ItemVariant> find(World world, BlockPos pos, BlockState state, @Nullable BlockEntity blockEntity, Direction direction) {
+
+        //  Entities can't be inside of blocks with block entities or collision, so there's no point in looking them up
+        if (world.isClient || blockEntity != null || !state.getCollisionShape(world, pos).isEmpty()) {
+            return null;
+        }
+
+        List<LivingEntity> wearers = world.getEntitiesByClass(LivingEntity.class, new Box(pos), entity -> !(entity instanceof PlayerEntity) && entity.isAlive() && findWornBag(entity) != null);
+        if (wearers.isEmpty()) {
+            return null;
+        }
+
+        LivingEntity wearer = wearers.get(world.getRandom().nextInt(wearers.size()));
+        EquipmentSlot slot = findWornBag(wearer);
+
+        return slot != null
+            ? SimpleImmersiveBags.ITEM_STORAGE.find(wearer.getEquippedStack(slot), ContainerItemContext.ofSingleSlot(new EquippedStackStorage(wearer, slot)))
+            : null;
+
+    }
+
+    //  Returns the first armor slot of the entity that has a bag equipped in it (as opposed to a bag that's only held)
+    @Nullable
+    private static EquipmentSlot findWornBag(LivingEntity entity) {
+
+        for (EquipmentSlot slot : EquipmentSlot.values()) {
+
+            ItemStack stack = entity.getEquippedStack(slot);
+            if (slot.getType() == EquipmentSlot.Type.ARMOR && stack.getItem() instanceof Equipment equipment && equipment.getSlotType() == slot && BagUtil.findContainer(stack) != null) {
+                return slot;
+            }
+
+        }
+
+        return null;
+
+    }
+
+}
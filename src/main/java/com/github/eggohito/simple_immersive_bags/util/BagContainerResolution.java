@@ -0,0 +1,17 @@
+package com.github.eggohito.simple_immersive_bags.util;
+
+import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import org.jetbrains.annotations.Nullable;
+
+//  The bag container that an item resolved to, cached in the item itself by BagUtil#findContainer. Items without a bag container
+//  resolve to null, which only holds until another provider is registered, hence the provider revision it was resolved with
+public record BagContainerResolution(@Nullable BagContainer bagContainer, int providerRevision) {
+
+    //  Bag items that registered themselves always resolve to themselves, since an item can only have a single provider
+    public static final int ALWAYS_VALID = -1;
+
+    public boolean isValid(int providerRevision) {
+        return this.providerRevision == ALWAYS_VALID || this.providerRevision == providerRevision;
+    }
+
+}
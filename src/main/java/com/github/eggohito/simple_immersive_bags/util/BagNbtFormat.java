@@ -0,0 +1,151 @@
+package com.github.eggohito.simple_immersive_bags.util;
+
+import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
+import com.github.eggohito.simple_immersive_bags.metrics.BagMetrics;
+import net.minecraft.nbt.NbtByte;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+//  The contents of a bag are kept in memory as the "Items" list written by Inventories#writeNbt, since that's what the rest of
+//  the mod patches and decodes. When the bag stack is serialized (to a player file, an item entity, a container, etc.), that
+//  list is replaced with a compact format instead:
+//
+//      "Format"    the version of the format, currently 1
+//      "Palette"   a list of every distinct item (its "id" and "tag") in the bag
+//      "Slots"     an int array of the slot index of each entry, in ascending order
+//      "Stacks"    an int array of the palette index of each entry, shifted 8 bits to the left, packed with its count
+//
+//  Item containers without a "Format" are in the legacy format, and are read as-is
+//
+//  The "Slot" of each entry of the "Items" list is a byte for the first 256 slots, which is what Inventories#readNbt (and older versions
+//  of the mod) can read, and a short for the slots after those
+public class BagNbtFormat {
+
+    public static final int VERSION = 1;
+
+    private static final Set<String> ENTRY_KEYS = Set.of("Slot", "id", "Count", "tag");
+
+    //  Bytes are read as unsigned, since that's how Inventories#writeNbt writes the slots from 128 to 255
+    public static int getSlot(NbtCompound entryNbt) {
+        return entryNbt.get("Slot") instanceof NbtByte slotNbt
+            ? slotNbt.byteValue() & 255
+            : entryNbt.getInt("Slot");
+    }
+
+    public static void putSlot(NbtCompound entryNbt, int slot) {
+
+        if (slot < 256) {
+            entryNbt.putByte("Slot", (byte) slot);
+        }
+
+        else {
+            entryNbt.putShort("Slot", (short) slot);
+        }
+
+    }
+
+    //  Replaces the "Items" list of the specified item container with the compact format. The list is left as-is if any of its
+    //  entries has data that the compact format can't hold
+    public static void compact(NbtCompound itemContainerNbt) {
+
+        if (!(itemContainerNbt.get("Items") instanceof NbtList itemsNbt) || itemsNbt.isEmpty() || itemsNbt.getHeldType() != NbtElement.COMPOUND_TYPE) {
+            return;
+        }
+
+        Map<NbtCompound, Integer> paletteIndices = new HashMap<>();
+        NbtList paletteNbt = new NbtList();
+
+        int[] slots = new int[itemsNbt.size()];
+        int[] stacks = new int[itemsNbt.size()];
+
+        for (int i = 0; i < itemsNbt.size(); i++) {
+
+            NbtCompound entryNbt = itemsNbt.getCompound(i);
+            if (!ENTRY_KEYS.containsAll(entryNbt.getKeys())) {
+                return;
+            }
+
+            NbtCompound paletteEntryNbt = new NbtCompound();
+            paletteEntryNbt.putString("id", entryNbt.getString("id"));
+
+            if (entryNbt.contains("tag", NbtElement.COMPOUND_TYPE)) {
+                paletteEntryNbt.put("tag", entryNbt.getCompound("tag"));
+            }
+
+            int paletteIndex = paletteIndices.computeIfAbsent(paletteEntryNbt, k -> {
+                paletteNbt.add(k);
+                return paletteNbt.size() - 1;
+            });
+
+            slots[i] = getSlot(entryNbt);
+            stacks[i] = paletteIndex << 8 | entryNbt.getByte("Count") & 255;
+
+        }
+
+        itemContainerNbt.remove("Items");
+        itemContainerNbt.putInt("Format", VERSION);
+        itemContainerNbt.put("Palette", paletteNbt);
+        itemContainerNbt.putIntArray("Slots", slots);
+        itemContainerNbt.putIntArray("Stacks", stacks);
+
+        BagMetrics.CONTENTS_COMPACTIONS.increment();
+
+    }
+
+    //  Replaces the compact format of the specified item container with the "Items" list it was made from. Item containers in
+    //  the legacy format (or in a format newer than this version of the mod knows about) are left as-is
+    public static void expand(NbtCompound itemContainerNbt) {
+
+        if (!itemContainerNbt.contains("Format", NbtElement.INT_TYPE)) {
+            return;
+        }
+
+        int version = itemContainerNbt.getInt("Format");
+        if (version != VERSION) {
+            SimpleImmersiveBags.LOGGER.warn("Bag contents are in an unknown format (version {}), and will be left as-is!", version);
+            return;
+        }
+
+        NbtList paletteNbt = itemContainerNbt.getList("Palette", NbtElement.COMPOUND_TYPE);
+        NbtList itemsNbt = new NbtList();
+
+        int[] slots = itemContainerNbt.getIntArray("Slots");
+        int[] stacks = itemContainerNbt.getIntArray("Stacks");
+
+        for (int i = 0; i < Math.min(slots.length, stacks.length); i++) {
+
+            int paletteIndex = stacks[i] >>> 8;
+            if (paletteIndex >= paletteNbt.size()) {
+                continue;
+            }
+
+            NbtCompound paletteEntryNbt = paletteNbt.getCompound(paletteIndex);
+            NbtCompound entryNbt = new NbtCompound();
+
+            putSlot(entryNbt, slots[i]);
+            entryNbt.putString("id", paletteEntryNbt.getString("id"));
+            entryNbt.putByte("Count", (byte) stacks[i]);
+
+            //  Entries of the same item share the tag of their palette entry, so each of them gets its own copy
+            if (paletteEntryNbt.contains("tag", NbtElement.COMPOUND_TYPE)) {
+                entryNbt.put("tag", paletteEntryNbt.getCompound("tag").copy());
+            }
+
+            itemsNbt.add(entryNbt);
+
+        }
+
+        itemContainerNbt.remove("Format");
+        itemContainerNbt.remove("Palette");
+        itemContainerNbt.remove("Slots");
+        itemContainerNbt.remove("Stacks");
+        itemContainerNbt.put("Items", itemsNbt);
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.github.eggohito.simple_immersive_bags.util;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+public enum BagSortKey {
+
+    ID(stack -> Registries.ITEM.getId(stack.getItem()), false),
+    NAME(stack -> stack.getName().getString(), false),
+    COUNT(ItemStack::getCount, true);
+
+    private final Function<ItemStack, Comparable<?>> keyFunction;
+    private final Comparator<Entry> comparator;
+
+    BagSortKey(Function<ItemStack, Comparable<?>> keyFunction, boolean descending) {
+
+        Comparator<Entry> keyComparator = Entry::compareKeys;
+
+        this.keyFunction = keyFunction;
+        this.comparator = (descending ? keyComparator.reversed() : keyComparator).thenComparing(createTieBreaker());
+
+    }
+
+    //  Sorts the specified stacks in place. The keys (some of which are strings, like the name) are computed once per stack rather than
+    //  once per comparison
+    public void sort(List<ItemStack> stacks) {
+
+        Entry[] entries = new Entry[stacks.size()];
+        for (int i = 0; i < entries.length; i++) {
+
+            ItemStack stack = stacks.get(i);
+            entries[i] = new Entry(stack, keyFunction.apply(stack), Registries.ITEM.getRawId(stack.getItem()), stack.hasNbt() ? stack.getNbt().toString() : "", stack.getCount());
+
+        }
+
+        Arrays.sort(entries, comparator);
+        for (int i = 0; i < entries.length; i++) {
+            stacks.set(i, entries[i].stack());
+        }
+
+    }
+
+    //  Ties are broken by the item, then its NBT (as SNBT, which lists its keys in order), then its count, so that sorting the same
+    //  stacks always ends up with the same order. This is created by each constant, since they're constructed before any static field
+    private static Comparator<Entry> createTieBreaker() {
+        return Comparator
+            .comparingInt(Entry::rawId)
+            .thenComparing(Entry::nbt)
+            .thenComparing(Comparator.comparingInt(Entry::count).reversed());
+    }
+
+    public BagSortKey next() {
+        BagSortKey[] values = values();
+        return values[(this.ordinal() + 1) % values.length];
+    }
+
+    private record Entry(ItemStack stack, Comparable<?> key, int rawId, String nbt, int count) {
+
+        //  The keys of the stacks being sorted all come from the same key function, so they're of the same type
+        @SuppressWarnings("unchecked")
+        private static int compareKeys(Entry entry, Entry other) {
+            return ((Comparable<Object>) entry.key()).compareTo(other.key());
+        }
+
+    }
+
+}
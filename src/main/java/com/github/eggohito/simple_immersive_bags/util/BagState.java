@@ -3,20 +3,37 @@ package com.github.eggohito.simple_immersive_bags.util;
 import com.mojang.serialization.Codec;
 import net.minecraft.util.StringIdentifiable;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum BagState implements StringIdentifiable {
 
-    OPENED("opened", 1),
-    CLOSED("closed", 0),
-    NONE("none", -1);
+    OPENED("opened", 1, (byte) 1),
+    CLOSED("closed", 0, (byte) 2),
+    NONE("none", -1, (byte) 0);
 
     public static final Codec<BagState> CODEC = StringIdentifiable.createCodec(BagState::values);
 
+    private static final BagState[] BY_ID = new BagState[3];
+    private static final Map<String, BagState> BY_NAME = new HashMap<>();
+
+    static {
+
+        for (BagState state : values()) {
+            BY_ID[state.id] = state;
+            BY_NAME.put(state.name, state);
+        }
+
+    }
+
     private final String name;
     private final int customModelFlag;
+    private final byte id;
 
-    BagState(String name, int customModelFlag) {
+    BagState(String name, int customModelFlag, byte id) {
         this.name = name;
         this.customModelFlag = customModelFlag;
+        this.id = id;
     }
 
     @Override
@@ -28,4 +45,18 @@ public enum BagState implements StringIdentifiable {
         return customModelFlag;
     }
 
+    public byte getId() {
+        return id;
+    }
+
+    public static BagState byId(byte id) {
+        return id >= 0 && id < BY_ID.length
+            ? BY_ID[id]
+            : NONE;
+    }
+
+    public static BagState byName(String name) {
+        return BY_NAME.getOrDefault(name, NONE);
+    }
+
 }
@@ -0,0 +1,6 @@
+package com.github.eggohito.simple_immersive_bags.util;
+
+public enum BagTransferMode {
+    DEPOSIT,
+    RESTOCK
+}
@@ -2,14 +2,20 @@ package com.github.eggohito.simple_immersive_bags.util;
 
 import com.github.eggohito.simple_immersive_bags.SimpleImmersiveBags;
 import com.github.eggohito.simple_immersive_bags.api.BagContainer;
+import com.github.eggohito.simple_immersive_bags.duck.EntityOpenedBagCache;
+import com.github.eggohito.simple_immersive_bags.duck.ItemBagContainerCache;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.LivingEntity;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.screen.PlayerScreenHandler;
 import net.minecraft.screen.slot.Slot;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BagUtil {
 
@@ -22,6 +28,57 @@ public class BagUtil {
         EquipmentSlot.HEAD
     };
 
+    //  Bumped whenever the state of any bag changes, which invalidates the opened bag cache of every entity
+    private static final AtomicInteger STATE_REVISION = new AtomicInteger();
+
+    //  Bumped whenever a provider is registered for SimpleImmersiveBags#ITEM_CONTAINER, which invalidates the items cached as not having
+    //  a bag container
+    private static final AtomicInteger PROVIDER_REVISION = new AtomicInteger();
+
+    //  Fallback providers may apply to any stack of any item, so no item can be cached as not having a bag container once there's one
+    private static volatile boolean hasFallbackProviders;
+
+    //  Resolves the bag container of the stack's item, and caches the result in the item itself if it doesn't depend on the stack. That's
+    //  the case for bag items that registered themselves, and for items without any provider (as long as no fallback provider exists),
+    //  so checking a stack of either only takes a field read. Any other item is looked up through SimpleImmersiveBags#ITEM_CONTAINER
+    @Nullable
+    public static BagContainer findContainer(ItemStack stack) {
+
+        Item item = stack.getItem();
+        ItemBagContainerCache bagContainerCache = (ItemBagContainerCache) item;
+
+        //  The revision is read before resolving, so that a provider registered in the meantime invalidates the result right away
+        int providerRevision = PROVIDER_REVISION.get();
+
+        BagContainerResolution resolution = bagContainerCache.sib$getBagContainerResolution();
+        if (resolution != null && resolution.isValid(providerRevision)) {
+            return resolution.bagContainer();
+        }
+
+        BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(stack, null);
+        if (bagContainer == item) {
+            bagContainerCache.sib$setBagContainerResolution(new BagContainerResolution(bagContainer, BagContainerResolution.ALWAYS_VALID));
+        }
+
+        else if (bagContainer == null && !hasFallbackProviders && SimpleImmersiveBags.ITEM_CONTAINER.getProvider(item) == null) {
+            bagContainerCache.sib$setBagContainerResolution(new BagContainerResolution(null, providerRevision));
+        }
+
+        return bagContainer;
+
+    }
+
+    @ApiStatus.Internal
+    public static void onContainerProviderRegistered(boolean fallback) {
+
+        if (fallback) {
+            hasFallbackProviders = true;
+        }
+
+        PROVIDER_REVISION.incrementAndGet();
+
+    }
+
     public static boolean withinEquipmentBounds(int slotIndex) {
         return slotIndex >= PlayerScreenHandler.EQUIPMENT_START && slotIndex < PlayerScreenHandler.EQUIPMENT_END;
     }
@@ -32,18 +89,60 @@ public class BagUtil {
 
     public static Optional<EquipmentSlot> getFirstOpenedBag(LivingEntity entity) {
 
-        for (EquipmentSlot slot : EQUIPMENT_SLOT_ORDER) {
+        OpenedBagCache openedBagCache = ((EntityOpenedBagCache) entity).sib$getOpenedBagCache();
+        int stateRevision = STATE_REVISION.get();
 
+        //  The cached result is still valid if no bag state has changed since, and the entity still has the same stacks equipped
+        if (openedBagCache.isValid(stateRevision) && isEquipmentUnchanged(entity, openedBagCache)) {
+            return openedBagCache.getOpenedBag();
+        }
+
+        Optional<EquipmentSlot> openedBag = Optional.empty();
+        for (int i = 0; i < EQUIPMENT_SLOT_ORDER.length; i++) {
+
+            EquipmentSlot slot = EQUIPMENT_SLOT_ORDER[i];
             ItemStack equippedStack = entity.getEquippedStack(slot);
-            BagContainer bagContainer = SimpleImmersiveBags.ITEM_CONTAINER.find(equippedStack, null);
 
+            openedBagCache.setEquipped(i, equippedStack);
+            if (openedBag.isPresent()) {
+                continue;
+            }
+
+            BagContainer bagContainer = findContainer(equippedStack);
             if (bagContainer != null && bagContainer.getState(equippedStack) == BagState.OPENED) {
-                return Optional.of(slot);
+                openedBag = Optional.of(slot);
+            }
+
+        }
+
+        openedBagCache.update(openedBag, stateRevision);
+        return openedBag;
+
+    }
+
+    public static int getEquipmentSlotCount() {
+        return EQUIPMENT_SLOT_ORDER.length;
+    }
+
+    public static void invalidateOpenedBag(LivingEntity entity) {
+        ((EntityOpenedBagCache) entity).sib$getOpenedBagCache().invalidate();
+    }
+
+    public static void invalidateOpenedBags() {
+        STATE_REVISION.incrementAndGet();
+    }
+
+    private static boolean isEquipmentUnchanged(LivingEntity entity, OpenedBagCache openedBagCache) {
+
+        for (int i = 0; i < EQUIPMENT_SLOT_ORDER.length; i++) {
+
+            if (!openedBagCache.isEquipped(i, entity.getEquippedStack(EQUIPMENT_SLOT_ORDER[i]))) {
+                return false;
             }
 
         }
 
-        return Optional.empty();
+        return true;
 
     }
 
@@ -0,0 +1,46 @@
+package com.github.eggohito.simple_immersive_bags.util;
+
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.item.ItemStack;
+
+import java.util.Optional;
+
+//  Holds the last result of BagUtil#getFirstOpenedBag for an entity, alongside the equipped stacks and the state revision it was
+//  computed from
+public class OpenedBagCache {
+
+    private final ItemStack[] equippedStacks;
+
+    private Optional<EquipmentSlot> openedBag = Optional.empty();
+    private int stateRevision = -1;
+
+    public OpenedBagCache(int slotCount) {
+        this.equippedStacks = new ItemStack[slotCount];
+    }
+
+    public boolean isValid(int stateRevision) {
+        return this.stateRevision != -1 && this.stateRevision == stateRevision;
+    }
+
+    public boolean isEquipped(int index, ItemStack stack) {
+        return equippedStacks[index] == stack;
+    }
+
+    public void setEquipped(int index, ItemStack stack) {
+        equippedStacks[index] = stack;
+    }
+
+    public Optional<EquipmentSlot> getOpenedBag() {
+        return openedBag;
+    }
+
+    public void update(Optional<EquipmentSlot> openedBag, int stateRevision) {
+        this.openedBag = openedBag;
+        this.stateRevision = stateRevision;
+    }
+
+    public void invalidate() {
+        this.stateRevision = -1;
+    }
+
+}